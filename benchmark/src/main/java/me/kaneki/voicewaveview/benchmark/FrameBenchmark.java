@@ -0,0 +1,88 @@
+package me.kaneki.voicewaveview.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import me.kaneki.voicewaveview.core.FrameTimer;
+import me.kaneki.voicewaveview.core.WaveFrameDriver;
+import me.kaneki.voicewaveview.core.WaveGeometry;
+import me.kaneki.voicewaveview.core.WaveRecorder;
+import me.kaneki.voicewaveview.core.WaveReducer;
+
+/**
+ * @author kaneki
+ * @Desctription 单帧开销基准：与控件相同通过WaveFrameDriver推进录制帧并计算端点
+ * lines为可见波形个数，1000约对应2000px宽、2px间隔
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FrameBenchmark {
+
+    //帧间隔 与刷新间隔一致，每帧新增一个采样
+    private static final long FRAME_NANOS = 16000000L;
+
+    @Param({"64", "1000"})
+    public int lines;
+
+    private WaveRecorder recorder;
+    private WaveGeometry geometry;
+    private WaveFrameDriver driver;
+    private long frameTimeNanos;
+    private int frame;
+
+    @Setup
+    public void setup() {
+        FrameTimer frameTimer = new FrameTimer();
+        //不限制时长 基准运行期间不会结束录制
+        recorder = new WaveRecorder(16, 0, WaveReducer.MEAN);
+        geometry = new WaveGeometry();
+        geometry.setBounds(lines * 2 + 10, 100, 2, 60, 1);
+        driver = new WaveFrameDriver(frameTimer, recorder, geometry);
+        recorder.setVisibleSize(lines);
+        recorder.start(lines);
+        for (int i = 0; i <= lines; i++) {
+            nextFrame();
+        }
+    }
+
+    /**
+     * 写入一个振幅、推进一帧并重新计算端点
+     */
+    @Benchmark
+    public int recordFrame() {
+        nextFrame();
+        return geometry.getLineCount();
+    }
+
+    /**
+     * 只计算端点，数据不变时强制重算
+     */
+    @Benchmark
+    public int buildGeometry() {
+        geometry.invalidate();
+        driver.buildRecordGeometry();
+        return geometry.getLineCount();
+    }
+
+    private void nextFrame() {
+        recorder.offer((frame++ % 37) / 37f);
+        driver.recordFrame(frameTimeNanos);
+        frameTimeNanos += FRAME_NANOS;
+        driver.buildRecordGeometry();
+    }
+}
@@ -0,0 +1,96 @@
+package me.kaneki.voicewaveview.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import me.kaneki.voicewaveview.core.WaveRecorder;
+import me.kaneki.voicewaveview.core.WaveReducer;
+
+/**
+ * @author kaneki
+ * @Desctription 录制过程基准：通过WaveRecorder.offer和advance写入振幅、逐帧采样和停止录制时的压缩
+ * samples按50ms刷新间隔对应1秒、60秒和10分钟的录制
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RecordBenchmark {
+
+    private static final int MAX_LINES = 64;
+    private static final long REFRESH_RATIO = 50;
+    //ingest每帧写入的振幅个数 约为AudioRecord回调一次的量
+    private static final int BATCH_SIZE = 16;
+
+    @Param({"20", "1200", "12000"})
+    public int samples;
+
+    @Param({"MEAN", "PEAK", "RMS"})
+    public WaveReducer reducer;
+
+    private float[] input;
+    private WaveRecorder recorder;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        input = new float[samples];
+        for (int i = 0; i < samples; i++) {
+            input[i] = random.nextFloat();
+        }
+        //不限制时长 原始波形保存在内存中
+        recorder = new WaveRecorder(REFRESH_RATIO, 0, reducer);
+        recorder.setVisibleSize(MAX_LINES);
+        record();
+    }
+
+    /**
+     * 整段录制：每个采样间隔写入一个振幅并推进一次，最后生成压缩结果
+     */
+    @Benchmark
+    public float[] record() {
+        recorder.start(MAX_LINES);
+        for (int i = 0; i < samples; i++) {
+            recorder.offer(input[i]);
+            recorder.advance((i + 1) * REFRESH_RATIO);
+        }
+        return recorder.finish();
+    }
+
+    /**
+     * 停止录制的开销，与录制时长无关
+     */
+    @Benchmark
+    public float[] stopRecord() {
+        return recorder.finish();
+    }
+
+    /**
+     * 批量写入振幅，每批之后推进一帧，两次采样之间的振幅取峰值
+     */
+    @Benchmark
+    public long ingest() {
+        recorder.start(MAX_LINES);
+        long elapsed = 0;
+        for (int i = 0; i < samples; i += BATCH_SIZE) {
+            recorder.offer(input, i, Math.min(BATCH_SIZE, samples - i));
+            elapsed += REFRESH_RATIO;
+            recorder.advance(elapsed);
+        }
+        return recorder.getSamplesIngested();
+    }
+}
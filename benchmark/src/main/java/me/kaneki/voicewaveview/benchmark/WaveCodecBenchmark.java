@@ -0,0 +1,72 @@
+package me.kaneki.voicewaveview.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import me.kaneki.voicewaveview.entity.WaveData;
+import me.kaneki.voicewaveview.entity.WaveDataCodec;
+
+/**
+ * @author kaneki
+ * @Desctription WaveData二进制编解码基准，按量化位数分别统计
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WaveCodecBenchmark {
+
+    @Param({"64", "1200", "12000"})
+    public int count;
+
+    @Param({"8", "16"})
+    public int bits;
+
+    private WaveData waveData;
+    private byte[] encoded;
+    private ByteBuffer encodedBuffer;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        float[] amplitudes = new float[count];
+        for (int i = 0; i < count; i++) {
+            amplitudes[i] = random.nextFloat();
+        }
+        waveData = new WaveData(amplitudes, count * 50L);
+        encoded = waveData.toBytes(bits);
+        encodedBuffer = ByteBuffer.allocateDirect(encoded.length);
+        encodedBuffer.put(encoded).flip();
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return waveData.toBytes(bits);
+    }
+
+    @Benchmark
+    public WaveData decodeBytes() {
+        return WaveData.fromBytes(encoded);
+    }
+
+    @Benchmark
+    public WaveData decodeByteBuffer() {
+        encodedBuffer.rewind();
+        return WaveDataCodec.decode(encodedBuffer);
+    }
+}
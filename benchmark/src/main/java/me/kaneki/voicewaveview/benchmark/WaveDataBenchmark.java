@@ -0,0 +1,62 @@
+package me.kaneki.voicewaveview.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import me.kaneki.voicewaveview.core.WavePyramid;
+import me.kaneki.voicewaveview.entity.WaveData;
+
+/**
+ * @author kaneki
+ * @Desctription WaveData基准：金字塔构建和重采样，编解码见WaveCodecBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WaveDataBenchmark {
+
+    @Param({"64", "1200", "12000"})
+    public int count;
+
+    private WaveData waveData;
+    private WavePyramid pyramid;
+    private float[] resampled;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        float[] amplitudes = new float[count];
+        for (int i = 0; i < count; i++) {
+            amplitudes[i] = random.nextFloat();
+        }
+        waveData = new WaveData(amplitudes, count * 50L);
+        pyramid = new WavePyramid(amplitudes);
+        resampled = new float[48];
+    }
+
+    @Benchmark
+    public WavePyramid buildPyramid() {
+        return new WavePyramid(waveData.getAmplitudes());
+    }
+
+    @Benchmark
+    public float[] resample() {
+        pyramid.resample(resampled.length, resampled, null);
+        return resampled;
+    }
+}
@@ -0,0 +1,71 @@
+package me.kaneki.voicewaveview;
+
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+
+import me.kaneki.voicewaveview.core.FrameClock;
+
+/**
+ * @author kaneki
+ * @Desctription 基于Choreographer的帧时钟，回调与vsync对齐，必须在带Looper的线程使用
+ * 同一线程的所有View共享同一个实例，每帧只向Choreographer注册一个回调，再分发给各View
+ */
+public final class ChoreographerFrameClock implements FrameClock, Choreographer.FrameCallback {
+
+    //Choreographer本身按线程区分，帧时钟同样每个线程一个
+    private static final ThreadLocal<ChoreographerFrameClock> instances = new ThreadLocal<>();
+
+    private final Choreographer choreographer = Choreographer.getInstance();
+    //等待下一帧的回调
+    private ArrayList<FrameCallback> pendingCallbacks = new ArrayList<>();
+    //本帧正在分发的回调 与pendingCallbacks交替使用避免分配
+    private ArrayList<FrameCallback> runningCallbacks = new ArrayList<>();
+    private boolean posted;
+
+    private ChoreographerFrameClock() {
+    }
+
+    /**
+     * @return 当前线程共享的帧时钟，主线程或渲染线程
+     */
+    public static ChoreographerFrameClock getInstance() {
+        ChoreographerFrameClock instance = instances.get();
+        if (instance == null) {
+            instance = new ChoreographerFrameClock();
+            instances.set(instance);
+        }
+        return instance;
+    }
+
+    @Override
+    public void postFrameCallback(FrameCallback callback) {
+        if (!pendingCallbacks.contains(callback))
+            pendingCallbacks.add(callback);
+        if (!posted) {
+            posted = true;
+            choreographer.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void removeFrameCallback(FrameCallback callback) {
+        pendingCallbacks.remove(callback);
+        if (posted && pendingCallbacks.isEmpty()) {
+            posted = false;
+            choreographer.removeFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        posted = false;
+        ArrayList<FrameCallback> callbacks = pendingCallbacks;
+        pendingCallbacks = runningCallbacks;
+        runningCallbacks = callbacks;
+        for (int i = 0; i < callbacks.size(); i++) {
+            callbacks.get(i).doFrame(frameTimeNanos);
+        }
+        callbacks.clear();
+    }
+}
@@ -0,0 +1,15 @@
+package me.kaneki.voicewaveview;
+
+/**
+ * @author kaneki
+ * @Desctription 外部播放位置来源，如MediaPlayer.getCurrentPosition，每帧在主线程读取一次
+ * 位置到达波形时长，或超过WaveFrameDriver.DEFAULT_STALL_MILLIS不再前进时视为播放结束，
+ * 不再请求帧回调并回调onPlayStopped；播放器暂停时应调用pauseOrResumePlay，提前停止时调用stopPlay
+ */
+public interface PlaybackPositionProvider {
+
+    /**
+     * @return 当前播放位置(ms)
+     */
+    long getCurrentPosition();
+}
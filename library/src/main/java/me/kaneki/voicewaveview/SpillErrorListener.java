@@ -0,0 +1,16 @@
+package me.kaneki.voicewaveview;
+
+import java.io.IOException;
+
+/**
+ * @author kaneki
+ * @Desctription 落盘文件读写出错回调，在主线程调用，同一次录制只回调一次
+ * 出错后录制继续，可见波形和压缩结果不受影响，只是落盘的原始波形不完整
+ */
+public interface SpillErrorListener {
+
+    /**
+     * @param e 第一个读写错误
+     */
+    void onSpillError(IOException e);
+}
@@ -0,0 +1,636 @@
+package me.kaneki.voicewaveview;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.Rect;
+import android.graphics.SurfaceTexture;
+import android.os.Handler;
+import android.util.AttributeSet;
+import android.view.TextureView;
+
+import me.kaneki.voicewaveview.core.AmplitudeScale;
+import me.kaneki.voicewaveview.core.FrameClock;
+import me.kaneki.voicewaveview.core.FrameTimer;
+import me.kaneki.voicewaveview.core.PcmAnalyzer;
+import me.kaneki.voicewaveview.core.WaveDynamics;
+import me.kaneki.voicewaveview.core.WaveFrameDriver;
+import me.kaneki.voicewaveview.core.WaveGeometry;
+import me.kaneki.voicewaveview.core.WaveRecorder;
+import me.kaneki.voicewaveview.core.WaveReducer;
+import me.kaneki.voicewaveview.entity.WaveData;
+
+/**
+ * @author kaneki
+ * @Desctription 基于TextureView的波形控件，在独立渲染线程中通过lockCanvas绘制，主线程繁忙时录制动画不受影响
+ * 录制模型和绘制方法与VoiceWaveView共用，对外方法需在主线程调用，控件状态只在渲染线程中修改
+ */
+public class VoiceWaveTextureView extends TextureView implements TextureView.SurfaceTextureListener {
+
+    private final static float DEFAULT_WAVE_WIDTH = 3.0f;
+    private final static float DEFAULT_WAVE_DIVIDER_WIDTH = 8.0f;
+    //与PcmAnalyzer的默认分析窗口一致，pushPcm与离线生成的波形相同
+    private final static int DEFAULT_REFRESH_RATIO = PcmAnalyzer.DEFAULT_WINDOW_MILLIS;
+    private final static int DEFAULT_MAX_DURATION = 60;
+    private final static String DEFAULT_COLOR_BACKGROUND = "#7f7f7f";
+    private final static String DEFAULT_COLOR_ACTIVE_WAVE = "#ffffff";
+    private final static String DEFAULT_COLOR_INACTIVE_WAVE = "#99ffffff";
+
+    private final static int MODE_RECORDING = 0;
+    private final static int MODE_PLAYING = 1;
+
+    //控件背景色
+    private int backgroundColor;
+    //波形颜色
+    private int activeLineColor;
+    //待播放波形颜色
+    private int inactiveLineColor;
+    //波形间隔
+    private float dividerWidth;
+    //波形线宽
+    private float lineWidth;
+    //刷新间隔
+    private long refreshRatio;
+    //最大录音时间 秒，0表示不限制
+    private int maxDuration;
+    //波形压缩合并方式
+    private WaveReducer compressReducer;
+    //振幅动态处理参数
+    private int attackTime;
+    private int releaseTime;
+    private int peakHoldTime;
+    private AmplitudeScale amplitudeScale;
+
+    private Paint paint;
+    //滚动位图贴图画笔 颜色即波形颜色
+    private Paint scrollPaint;
+    //录制波形模型 与VoiceWaveView共用
+    private WaveRecorder waveRecorder;
+    //波形线段端点
+    private WaveGeometry waveGeometry;
+    //录制和播放的有效运行时长
+    private FrameTimer frameTimer;
+    //录制和播放的逐帧推进 与VoiceWaveView共用
+    private WaveFrameDriver frameDriver;
+
+    //共享渲染线程的Handler 只在主线程中获取和释放
+    private Handler renderHandler;
+    //渲染线程的帧时钟
+    private FrameClock frameClock;
+
+    //Surface可用标记 lockCanvas期间持有锁，销毁回调等待绘制结束
+    private final Object surfaceLock = new Object();
+    private boolean surfaceReady;
+    //本次绘制的区域
+    private final Rect dirtyRect = new Rect();
+    //下一帧需要整体重画
+    private boolean fullRedraw = true;
+
+    /********************* 以下只在渲染线程中读写 *********************/
+
+    private int width;
+    private int height;
+    //能包含的最大波形个数
+    private int maxLines;
+    //波形最大高度
+    private float maxWaveHeight;
+    //当前模式
+    private int mode = -1;
+    //录制动画运行标记
+    private boolean record_flag;
+    //播放动画运行标记
+    private boolean play_flag;
+    //播放暂停标记
+    private boolean isPlayPause;
+    //压缩后的波形 不会修改其内容，可能与WaveData共享
+    private float[] compressWave;
+    //重采样复用的缓冲区 只属于本控件
+    private float[] resampleWave;
+    //压缩波形对应的原始数据 尺寸变化时据此重新采样
+    private WaveData sourceWaveData;
+    //波形时长
+    private long duration;
+    //播放波形位置
+    private int current_position;
+    //上次画出的播放位置
+    private int drawnPosition = -1;
+    //录制中的滚动位图 每帧只画新增的波形
+    private WaveScrollBuffer scrollBuffer;
+    //滚动位图尚未画入的新增波形个数
+    private int pendingScrollCount;
+
+    //录制暂停标记 输入线程也会读取
+    private volatile boolean isRecordPause = true;
+    //最近一次录制结果 主线程读取
+    private volatile WaveData lastWaveData;
+
+    public VoiceWaveTextureView(Context context) {
+        this(context, null);
+    }
+
+    public VoiceWaveTextureView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public VoiceWaveTextureView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+
+        initAttrs(context, attrs);
+        initParameters();
+    }
+
+    /**
+     * 初始化自定义参数，与VoiceWaveView使用相同的属性
+     * @param attrs
+     */
+    private void initAttrs(Context context, AttributeSet attrs) {
+        TypedArray ta = context.obtainStyledAttributes(attrs, R.styleable.VoiceWaveView);
+
+        backgroundColor = ta.getColor(R.styleable.VoiceWaveView_backgroundColor, Color.parseColor(DEFAULT_COLOR_BACKGROUND));
+        activeLineColor = ta.getColor(R.styleable.VoiceWaveView_activeLineColor, Color.parseColor(DEFAULT_COLOR_ACTIVE_WAVE));
+        inactiveLineColor = ta.getColor(R.styleable.VoiceWaveView_inactiveLineColor, Color.parseColor(DEFAULT_COLOR_INACTIVE_WAVE));
+        lineWidth = ta.getDimension(R.styleable.VoiceWaveView_lineWidth, DEFAULT_WAVE_WIDTH);
+        dividerWidth = ta.getDimension(R.styleable.VoiceWaveView_dividerWidth, DEFAULT_WAVE_DIVIDER_WIDTH);
+        refreshRatio = Math.max(ta.getInt(R.styleable.VoiceWaveView_refreshRatio, DEFAULT_REFRESH_RATIO), 1);
+        maxDuration = ta.getInt(R.styleable.VoiceWaveView_duration, DEFAULT_MAX_DURATION);
+        compressReducer = WaveReducer.values()[ta.getInt(R.styleable.VoiceWaveView_compressReducer, WaveReducer.MEAN.ordinal())];
+        attackTime = ta.getInt(R.styleable.VoiceWaveView_attackTime, 0);
+        releaseTime = ta.getInt(R.styleable.VoiceWaveView_releaseTime, 0);
+        peakHoldTime = ta.getInt(R.styleable.VoiceWaveView_peakHoldTime, 0);
+        amplitudeScale = AmplitudeScale.values()[ta.getInt(R.styleable.VoiceWaveView_amplitudeScale, AmplitudeScale.LINEAR.ordinal())];
+
+        ta.recycle();
+    }
+
+    /**
+     * 初始化变量
+     */
+    private void initParameters() {
+        paint = WaveRenderer.createWavePaint(lineWidth);
+        scrollPaint = new Paint();
+        waveRecorder = new WaveRecorder(refreshRatio, maxDuration, compressReducer);
+        //动态处理在渲染线程的帧回调中进行，只在创建时从属性读取
+        WaveDynamics dynamics = waveRecorder.getDynamics();
+        dynamics.setAttackTime(attackTime);
+        dynamics.setReleaseTime(releaseTime);
+        dynamics.setPeakHoldTime(peakHoldTime);
+        dynamics.setScale(amplitudeScale);
+        waveGeometry = new WaveGeometry();
+        frameTimer = new FrameTimer();
+        frameDriver = new WaveFrameDriver(frameTimer, waveRecorder, waveGeometry);
+        //背景色可能半透明，每次绘制都会完整覆盖
+        setOpaque(false);
+        setSurfaceTextureListener(this);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        quitRenderThread();
+    }
+
+    @Override
+    public void onSurfaceTextureAvailable(SurfaceTexture surface, final int width, final int height) {
+        synchronized (surfaceLock) {
+            surfaceReady = true;
+        }
+        post(new Runnable() {
+            @Override
+            public void run() {
+                onSurfaceSizeChanged(width, height);
+            }
+        }, true);
+    }
+
+    @Override
+    public void onSurfaceTextureSizeChanged(SurfaceTexture surface, final int width, final int height) {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                onSurfaceSizeChanged(width, height);
+            }
+        }, true);
+    }
+
+    @Override
+    public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
+        //等待渲染线程结束本次绘制，之后不再lockCanvas
+        synchronized (surfaceLock) {
+            surfaceReady = false;
+        }
+        return true;
+    }
+
+    @Override
+    public void onSurfaceTextureUpdated(SurfaceTexture surface) {
+    }
+
+    /********************* 对外方法 *********************/
+
+    /**
+     * 开始录制
+     */
+    public void startRecord() {
+        isRecordPause = false;
+        post(startRecordTask, true);
+    }
+
+    private final Runnable startRecordTask = new Runnable() {
+        @Override
+        public void run() {
+            mode = MODE_RECORDING;
+            play_flag = false;
+            compressWave = null;
+            sourceWaveData = null;
+            duration = 0;
+            waveRecorder.start(maxLines);
+            frameTimer.reset();
+            waveGeometry.invalidate();
+            pendingScrollCount = 0;
+            if (scrollBuffer != null)
+                scrollBuffer.invalidate();
+            fullRedraw = true;
+            record_flag = true;
+            frameClock.postFrameCallback(frameCallback);
+        }
+    };
+
+    /**
+     * 停止录制
+     */
+    public void stopRecord() {
+        post(stopRecordTask, false);
+    }
+
+    private final Runnable stopRecordTask = new Runnable() {
+        @Override
+        public void run() {
+            if (record_flag)
+                finishRecord();
+        }
+    };
+
+    /**
+     * 录制波形高度设置 0-100%，可在多个线程中调用，写入之间加锁串行
+     * 不能与其他线程中的pushAmplitudes混用，高频输入应在单个线程中使用pushAmplitudes
+     * @param percent
+     */
+    public void setWaveHeightPercent(int percent) {
+        if (!isRecordPause) {
+            if (percent >= 100 )
+                percent = 100;
+            else if (percent < 1)
+                percent = 1;
+
+            waveRecorder.offerShared(percent / 100f);
+        }
+    }
+
+    /**
+     * 批量写入振幅，只能有一个输入线程，队列满时多出的振幅被丢弃
+     * @param values 振幅 0-1
+     * @param offset
+     * @param count
+     */
+    public void pushAmplitudes(float[] values, int offset, int count) {
+        if (!isRecordPause)
+            waveRecorder.offer(values, offset, count);
+    }
+
+    /**
+     * 启动录制波形播放
+     * @param waveData 准备播放的波形列表，传null则播放上次stopRecord后的列表
+     */
+    public void startPlay(WaveData waveData) {
+        isRecordPause = true;
+        //Handler投递保证渲染线程能看到写入，连续调用时以最后一次为准
+        pendingPlayData = waveData;
+        post(startPlayTask, true);
+    }
+
+    //等待渲染线程开始播放的波形 为null时播放上次录制的波形
+    private volatile WaveData pendingPlayData;
+
+    private final Runnable startPlayTask = new Runnable() {
+        @Override
+        public void run() {
+            WaveData waveData = pendingPlayData;
+            pendingPlayData = null;
+            record_flag = false;
+            decodeWaveData(waveData != null ? waveData : sourceWaveData);
+            if (compressWave == null)
+                return;
+            mode = MODE_PLAYING;
+            current_position = 0;
+            isPlayPause = false;
+            frameTimer.reset();
+            fullRedraw = true;
+            play_flag = true;
+            frameClock.postFrameCallback(frameCallback);
+        }
+    };
+
+    /**
+     * 暂停播放或恢复播放
+     */
+    public void pauseOrResumePlay() {
+        post(pauseOrResumeTask, false);
+    }
+
+    private final Runnable pauseOrResumeTask = new Runnable() {
+        @Override
+        public void run() {
+            if (!play_flag)
+                return;
+            isPlayPause = !isPlayPause;
+            if (isPlayPause) {
+                frameTimer.pause();
+                frameClock.removeFrameCallback(frameCallback);
+            } else {
+                frameClock.postFrameCallback(frameCallback);
+            }
+        }
+    };
+
+    /**
+     * 根据保存波形数据，画出波形
+     * @param waveData
+     */
+    public void drawWaveData(WaveData waveData) {
+        isRecordPause = true;
+        pendingDrawData = waveData;
+        post(drawWaveDataTask, true);
+    }
+
+    //等待渲染线程画出的波形
+    private volatile WaveData pendingDrawData;
+
+    private final Runnable drawWaveDataTask = new Runnable() {
+        @Override
+        public void run() {
+            WaveData waveData = pendingDrawData;
+            pendingDrawData = null;
+            record_flag = false;
+            play_flag = false;
+            releaseScrollBuffer();
+            decodeWaveData(waveData);
+            mode = MODE_RECORDING;
+            fullRedraw = true;
+            drawFrame();
+        }
+    };
+
+    /**
+     * 获取最近一次录制的语音波形，可在主线程调用
+     * @return
+     */
+    public WaveData getLastWaveData() {
+        return lastWaveData;
+    }
+
+    /********************* 内部方法 *********************/
+
+    /**
+     * 把任务交给渲染线程，需要时启动渲染线程
+     * @param task
+     * @param start 渲染线程未启动时是否启动
+     */
+    private void post(Runnable task, boolean start) {
+        if (renderHandler == null) {
+            if (!start)
+                return;
+            renderHandler = WaveRenderThread.acquire();
+            renderHandler.post(attachTask);
+        }
+        renderHandler.post(task);
+    }
+
+    /**
+     * 停止动画并释放共享渲染线程，最后一个控件释放后线程退出
+     */
+    private void quitRenderThread() {
+        if (renderHandler == null)
+            return;
+        renderHandler.post(detachTask);
+        renderHandler = null;
+        WaveRenderThread.release();
+    }
+
+    //以下任务预先创建，反复录制和播放时不再分配
+    private final Runnable attachTask = new Runnable() {
+        @Override
+        public void run() {
+            //Choreographer按线程区分，共享渲染线程上的所有控件共用同一个帧时钟
+            frameClock = ChoreographerFrameClock.getInstance();
+        }
+    };
+
+    private final Runnable detachTask = new Runnable() {
+        @Override
+        public void run() {
+            //与VoiceWaveView一致，录制中被移除时结束录制，保留压缩结果供getLastWaveData读取
+            if (record_flag)
+                finishRecord();
+            record_flag = false;
+            play_flag = false;
+            frameClock.removeFrameCallback(frameCallback);
+            releaseScrollBuffer();
+        }
+    };
+
+    private void onSurfaceSizeChanged(int width, int height) {
+        this.width = width;
+        this.height = height;
+        //计算波形最大高度 高度的60%
+        float waveHeight = WaveRenderer.getMaxWaveHeight(height);
+        boolean heightChanged = waveHeight != maxWaveHeight;
+        maxWaveHeight = waveHeight;
+        int lines = WaveRenderer.getMaxLines(width, dividerWidth);
+        //旧版像素偏移数据需按新的高度换算
+        if (lines != maxLines || heightChanged && sourceWaveData != null && sourceWaveData.isPixelBased()) {
+            maxLines = lines;
+            if (!record_flag && sourceWaveData != null)
+                decodeWaveData(sourceWaveData);
+        }
+        waveRecorder.setVisibleSize(maxLines);
+        waveGeometry.setBounds(width, height / 2, dividerWidth, maxWaveHeight, WaveRenderer.MIN_WAVE_HEIGHT);
+        fullRedraw = true;
+        drawFrame();
+    }
+
+    private void decodeWaveData(WaveData waveData) {
+        if (waveData != null) {
+            sourceWaveData = waveData;
+            //在渲染线程执行，只读取调用方的数据
+            WaveData drawWaveData = WaveRenderer.toViewWaveData(waveData, maxWaveHeight);
+            //波形个数与控件不一致时通过金字塔重采样到复用的缓冲区
+            if (maxLines > 0) {
+                compressWave = drawWaveData.getAmplitudes(maxLines, resampleWave);
+                if (compressWave != drawWaveData.getAmplitudes())
+                    resampleWave = compressWave;
+            } else {
+                compressWave = drawWaveData.getAmplitudes();
+            }
+            duration = waveData.getDuration();
+            waveGeometry.invalidate();
+        }
+    }
+
+    /**
+     * 结束录制，压缩波形并画出
+     */
+    private void finishRecord() {
+        record_flag = false;
+        isRecordPause = true;
+        frameClock.removeFrameCallback(frameCallback);
+        //录制结束后不再需要滚动位图
+        releaseScrollBuffer();
+        compressWave = waveRecorder.finish();
+        duration = waveRecorder.getDuration();
+        sourceWaveData = new WaveData(compressWave, duration);
+        //getWaveList按当前波形最大高度换算为像素偏移
+        sourceWaveData.setWaveHeight(maxWaveHeight);
+        lastWaveData = sourceWaveData;
+        waveGeometry.invalidate();
+        fullRedraw = true;
+        drawFrame();
+    }
+
+    /**
+     * 录制帧：补齐本帧应采样的个数，有新增波形时只把新波形画进滚动位图并贴到波形区域
+     * @param frameTimeNanos
+     */
+    private void doRecordFrame(long frameTimeNanos) {
+        int added = frameDriver.recordFrame(frameTimeNanos);
+        pendingScrollCount += added;
+        //录制最大时间
+        if (waveRecorder.isFinished()) {
+            finishRecord();
+            return;
+        }
+        if (added > 0)
+            drawFrame();
+        frameClock.postFrameCallback(frameCallback);
+    }
+
+    /**
+     * 把新增波形画进滚动位图
+     * @return 超出位图预算时返回false，退回按端点整体重画
+     */
+    private boolean updateScrollBuffer() {
+        if (maxLines == 0)
+            return false;
+        if (scrollBuffer == null)
+            scrollBuffer = new WaveScrollBuffer();
+        if (!scrollBuffer.prepare(maxLines, dividerWidth, height, maxWaveHeight)) {
+            pendingScrollCount = 0;
+            return false;
+        }
+        scrollBuffer.update(waveRecorder.getVisibleWave(), pendingScrollCount, paint);
+        pendingScrollCount = 0;
+        return true;
+    }
+
+    /**
+     * 滚动位图归还共享池
+     */
+    private void releaseScrollBuffer() {
+        pendingScrollCount = 0;
+        if (scrollBuffer != null)
+            scrollBuffer.release();
+    }
+
+    /**
+     * 播放帧：位置跨过波形时只重画新旧分界之间的区域
+     * @param frameTimeNanos
+     */
+    private void doPlayFrame(long frameTimeNanos) {
+        if (frameDriver.playFrame(frameTimeNanos, compressWave.length, duration))
+            frameClock.postFrameCallback(frameCallback);
+        else
+            play_flag = false;
+        current_position = frameDriver.getPlayPosition();
+        if (current_position != drawnPosition)
+            drawFrame();
+    }
+
+    /**
+     * 锁定Surface并绘制，非整体重画时录制只锁定波形所在的区域，播放只锁定播放位置变化的区域
+     */
+    private void drawFrame() {
+        if (width == 0 || height == 0)
+            return;
+        //录制中优先使用滚动位图，不再按端点重画全部波形
+        boolean scroll = record_flag && updateScrollBuffer();
+        if (record_flag && !scroll) {
+            frameDriver.buildRecordGeometry();
+        } else if (!record_flag && waveGeometry.isDirty()) {
+            if (compressWave != null)
+                waveGeometry.build(compressWave, compressWave.length);
+            else
+                waveGeometry.clear();
+        }
+        int activeCount = Math.min(current_position + 1, waveGeometry.getLineCount());
+        boolean partial = false;
+        if (!fullRedraw && scroll) {
+            //波形区域之外只有背景色，不需要每帧重画
+            float left = width - (maxLines + 1) * dividerWidth;
+            float extent = Math.max(maxWaveHeight, WaveRenderer.MIN_WAVE_HEIGHT) + lineWidth;
+            dirtyRect.set(Math.max((int) left, 0), Math.max((int) (height / 2 - extent), 0),
+                    width, Math.min((int) Math.ceil(height / 2 + extent), height));
+            partial = true;
+        } else if (!fullRedraw && mode == MODE_PLAYING && drawnPosition >= 0) {
+            float from = getSplitX(Math.min(drawnPosition + 1, waveGeometry.getLineCount()));
+            float to = getSplitX(activeCount);
+            dirtyRect.set((int) (Math.min(from, to) - lineWidth), 0, (int) Math.ceil(Math.max(from, to) + lineWidth), height);
+            partial = true;
+        }
+        synchronized (surfaceLock) {
+            if (!surfaceReady)
+                return;
+            Canvas canvas = partial ? lockCanvas(dirtyRect) : lockCanvas();
+            if (canvas == null)
+                return;
+            try {
+                //lockCanvas(dirty)只保证区域外像素不变，区域内必须完整覆盖
+                canvas.drawColor(backgroundColor, PorterDuff.Mode.SRC);
+                if (scroll) {
+                    scrollPaint.setColor(activeLineColor);
+                    scrollBuffer.draw(canvas, width - maxLines * dividerWidth, scrollPaint);
+                } else if (mode == MODE_PLAYING) {
+                    WaveRenderer.drawPlayWave(canvas, waveGeometry, activeCount, activeLineColor, inactiveLineColor, paint);
+                } else if (mode == MODE_RECORDING) {
+                    paint.setColor(activeLineColor);
+                    WaveRenderer.drawWave(canvas, waveGeometry, paint);
+                }
+            } finally {
+                unlockCanvasAndPost(canvas);
+            }
+        }
+        fullRedraw = false;
+        drawnPosition = mode == MODE_PLAYING ? current_position : -1;
+    }
+
+    /**
+     * @param activeCount 已播放的波形个数
+     * @return 已播放与待播放部分的分界
+     */
+    private float getSplitX(int activeCount) {
+        if (activeCount >= waveGeometry.getLineCount())
+            return width;
+        return waveGeometry.getPoints()[activeCount << 2] - dividerWidth / 2;
+    }
+
+    private final FrameClock.FrameCallback frameCallback = new FrameClock.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (record_flag)
+                doRecordFrame(frameTimeNanos);
+            else if (play_flag && !isPlayPause && compressWave != null)
+                doPlayFrame(frameTimeNanos);
+        }
+    };
+}
@@ -1,21 +1,45 @@
 package me.kaneki.voicewaveview;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.drawable.Drawable;
+import android.os.Parcel;
+import android.os.Parcelable;
 import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
 import android.view.View;
+import android.view.ViewParent;
+import android.widget.OverScroller;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 
-import me.kaneki.voicewaveview.entity.WaveBean;
+import me.kaneki.voicewaveview.core.AmplitudeScale;
+import me.kaneki.voicewaveview.core.ChannelLayout;
+import me.kaneki.voicewaveview.core.FloatRingBuffer;
+import me.kaneki.voicewaveview.core.FrameClock;
+import me.kaneki.voicewaveview.core.FrameTimer;
+import me.kaneki.voicewaveview.core.PcmAnalyzer;
+import me.kaneki.voicewaveview.core.SampleStore;
+import me.kaneki.voicewaveview.core.SpillingSampleStore;
+import me.kaneki.voicewaveview.core.WaveDataCache;
+import me.kaneki.voicewaveview.core.WaveDynamics;
+import me.kaneki.voicewaveview.core.WaveFrameDriver;
+import me.kaneki.voicewaveview.core.WaveGeometry;
+import me.kaneki.voicewaveview.core.WavePlayback;
+import me.kaneki.voicewaveview.core.WavePyramid;
+import me.kaneki.voicewaveview.core.WaveRecorder;
+import me.kaneki.voicewaveview.core.WaveReducer;
+import me.kaneki.voicewaveview.core.WaveTimeline;
 import me.kaneki.voicewaveview.entity.WaveData;
 
 /**
@@ -25,7 +49,8 @@ public class VoiceWaveView extends View {
 
     private final static float DEFAULT_WAVE_WIDTH = 3.0f;
     private final static float DEFAULT_WAVE_DIVIDER_WIDTH = 8.0f;
-    private final static int DEFAULT_REFRESH_RATIO = 50;
+    //与PcmAnalyzer的默认分析窗口一致，pushPcm与离线生成的波形相同
+    private final static int DEFAULT_REFRESH_RATIO = PcmAnalyzer.DEFAULT_WINDOW_MILLIS;
     private final static int DEFAULT_MAX_DURATION = 60;
     private final static String DEFAULT_COLOR_BACKGROUND = "#7f7f7f";
     private final static String DEFAULT_COLOR_ACTIVE_WAVE = "#ffffff";
@@ -39,8 +64,6 @@ public class VoiceWaveView extends View {
 
     //录制计时
     private long duration;
-    //播放线程等待间隔
-    private long playSleepTime;
 
     //播放波形位置
     private int current_position = 1;
@@ -51,12 +74,12 @@ public class VoiceWaveView extends View {
     //波形最大高度
     private float maxWaveHeight;
 
-    //录制线程运行标记
+    //录制动画运行标记
     private boolean record_flag;
-    //播放线程标记
+    //播放动画运行标记
     private boolean play_flag;
-    //录制暂停标记
-    private boolean isRecordPause;
+    //录制暂停标记 输入线程也会读取
+    private volatile boolean isRecordPause;
     //播放暂停标记
     private boolean isPlayPause;
 
@@ -72,26 +95,100 @@ public class VoiceWaveView extends View {
     private float lineWidth;
     //刷新间隔
     private long refreshRatio;
-    //最大录音时间
+    //最大录音时间 秒，0表示不限制
     private int maxDuration;
     //背景图
     private Drawable backgroundDrawable;
+    //波形压缩合并方式
+    private WaveReducer compressReducer;
 
     private Context context;
-    //波形录制线程
-    private VoiceDrawTask voiceDrawTask;
-    //波形播放线程
-    private VoicePlayDrawTask voicePlayDrawTask;
     private Paint paint;
-    private Timer timer;
+    //帧时钟 录制和播放均在帧回调中推进
+    private FrameClock frameClock;
+    //录制和播放的有效运行时长
+    private FrameTimer frameTimer;
+    //录制和播放的逐帧推进
+    private WaveFrameDriver frameDriver;
 
-    private LinkedList<WaveBean> linkedList;
-    private LinkedList<WaveBean> allLinkedList;
-    private LinkedList<WaveBean> defaultLinkedList;
-    private ArrayList<WaveBean> compressLinkedList;
+    //录制波形模型 可见波形、压缩摘要和整段原始波形
+    private WaveRecorder waveRecorder;
+    //落盘存储 长时间录制时使用
+    private SpillingSampleStore spillWave;
+    //落盘出错回调 同一次录制只回调一次
+    private SpillErrorListener spillErrorListener;
+    private boolean spillErrorReported;
+    //压缩后的波形 不会修改其内容，可能与WaveData共享或位于重采样缓冲区 多声道时为各声道的峰值
+    private float[] compressWave;
+    //多声道时各声道的压缩波形 单声道时为null
+    private float[][] compressChannels;
+    //重采样复用的缓冲区 反复播放同一宽度的波形时不再分配，只属于本View
+    private float[] resampleWave;
+    private float[][] resampleChannels = new float[0][];
+    //多声道重采样结果的外层数组 元素可能是resampleChannels中的数组或WaveData中的原数组
+    private float[][] decodedChannels = new float[0][];
+    //多声道排列方式
+    private ChannelLayout channelLayout;
+    //多声道各声道颜色 为null时使用activeLineColor
+    private int[] channelColors;
+    //波形样式
+    private WaveStyle waveStyle;
+    //振幅动态处理参数 仅用于读取属性，之后以WaveDynamics中的值为准
+    private int attackTime;
+    private int releaseTime;
+    private int peakHoldTime;
+    private AmplitudeScale amplitudeScale;
+    //压缩波形对应的原始数据 View宽度变化时据此重新采样
+    private WaveData sourceWaveData;
+    //实际绘制的数据 旧版像素偏移数据为按本View高度换算的副本，其余与sourceWaveData相同
+    private WaveData drawWaveData;
+    //压缩波形对应的缓存key
+    private String sourceKey;
+    //波形缓存 默认所有View共享
+    private WaveDataCache waveDataCache = WaveDataCache.getDefault();
+    //外部播放位置来源 为null时按帧时间计算播放位置
+    private PlaybackPositionProvider positionProvider;
+    //帧时钟是否已对齐到外部播放位置 开始、恢复和跳转后的第一帧对齐
+    private boolean providerClockAligned;
+    //运行指标 仅在设置监听时统计
+    private WaveMetricsListener metricsListener;
+    private WaveMetrics metrics;
+    //波形线段端点 仅在数据或尺寸变化时重新计算
+    private WaveGeometry waveGeometry;
+    //上次计算端点使用的数据源
+    private Object geometrySource;
+    //是否启用位图缓存 暂停和播放时波形只画一次
+    private boolean cacheEnabled;
+    //波形形状缓存 ALPHA_8
+    private Bitmap cacheBitmap;
+    private Canvas cacheCanvas;
+    //缓存内容需要重画
+    private boolean cacheDirty = true;
+    private Paint cachePaint;
+    //录制时的滚动位图 每帧只画新增的波形，与位图缓存一起启用
+    private WaveScrollBuffer scrollBuffer;
+    //上次绘制后新增、尚未画进滚动位图的波形个数
+    private int pendingScrollCount;
+    //是否启用时间轴 录制结束后可滚动缩放查看全分辨率波形
+    private boolean timelineEnabled;
+    //时间轴数据源版本，后台读回完成时据此判断是否过期
+    private int timelineRequest;
+    private WaveTimeline waveTimeline;
+    //视口内的波形 长度为maxLines + 1
+    private float[] timelineWave;
+    private GestureDetector gestureDetector;
+    private ScaleGestureDetector scaleGestureDetector;
+    private OverScroller scroller;
 
-    //对外波形高度参数 volatile标记作为线程同步作用
-    private volatile float waveHeight;
+    //是否已添加到窗口
+    private boolean attached;
+    //不可见时挂起帧回调，录制和播放计时不受影响，恢复可见后补齐
+    private boolean suspended;
+
+    //PCM分析器 只在输入线程中使用
+    private PcmAnalyzer pcmAnalyzer;
+    //PCM振幅计算方式
+    private volatile PcmAnalyzer.Mode pcmAnalyzeMode = PcmAnalyzer.Mode.DBFS;
 
     public VoiceWaveView(Context context) {
         this(context, null);
@@ -120,9 +217,18 @@ public class VoiceWaveView extends View {
         activeLineColor = ta.getColor(R.styleable.VoiceWaveView_activeLineColor, Color.parseColor(DEFAULT_COLOR_ACTIVE_WAVE));
         inactiveLineColor = ta.getColor(R.styleable.VoiceWaveView_inactiveLineColor, Color.parseColor(DEFAULT_COLOR_INACTIVE_WAVE));
         lineWidth = ta.getDimension(R.styleable.VoiceWaveView_lineWidth, DEFAULT_WAVE_WIDTH);
-        dividerWidth = ta.getDimension(R.styleable.VoiceWaveView_duration, DEFAULT_WAVE_DIVIDER_WIDTH);
-        refreshRatio = ta.getInt(R.styleable.VoiceWaveView_refreshRatio, DEFAULT_REFRESH_RATIO);
+        dividerWidth = ta.getDimension(R.styleable.VoiceWaveView_dividerWidth, DEFAULT_WAVE_DIVIDER_WIDTH);
+        refreshRatio = Math.max(ta.getInt(R.styleable.VoiceWaveView_refreshRatio, DEFAULT_REFRESH_RATIO), 1);
         maxDuration = ta.getInt(R.styleable.VoiceWaveView_duration, DEFAULT_MAX_DURATION);
+        cacheEnabled = ta.getBoolean(R.styleable.VoiceWaveView_cacheEnabled, false);
+        timelineEnabled = ta.getBoolean(R.styleable.VoiceWaveView_timelineEnabled, false);
+        attackTime = ta.getInt(R.styleable.VoiceWaveView_attackTime, 0);
+        releaseTime = ta.getInt(R.styleable.VoiceWaveView_releaseTime, 0);
+        peakHoldTime = ta.getInt(R.styleable.VoiceWaveView_peakHoldTime, 0);
+        amplitudeScale = AmplitudeScale.values()[ta.getInt(R.styleable.VoiceWaveView_amplitudeScale, AmplitudeScale.LINEAR.ordinal())];
+        compressReducer = WaveReducer.values()[ta.getInt(R.styleable.VoiceWaveView_compressReducer, WaveReducer.MEAN.ordinal())];
+        channelLayout = ChannelLayout.values()[ta.getInt(R.styleable.VoiceWaveView_channelLayout, ChannelLayout.MIRRORED.ordinal())];
+        waveStyle = WaveStyle.create(ta.getInt(R.styleable.VoiceWaveView_waveStyle, WaveStyle.STYLE_LINE));
         backgroundDrawable = getBackground();
 
         ta.recycle();
@@ -132,47 +238,120 @@ public class VoiceWaveView extends View {
      * 初始化变量
      */
     private void initParameters() {
-        timer = new Timer();
-        paint = new Paint();
-        //设置抗锯齿
-        paint.setAntiAlias(true);
-        //设置粗体
-        paint.setFakeBoldText(true);
-        //设置画笔宽度
-        paint.setStrokeWidth(lineWidth);
+        frameClock = ChoreographerFrameClock.getInstance();
+        frameTimer = new FrameTimer();
+        paint = WaveRenderer.createWavePaint(lineWidth);
+        waveStyle.applyTo(paint);
+        cachePaint = new Paint();
 
-        allLinkedList = new LinkedList<>();
-        defaultLinkedList = new LinkedList<>();
-        linkedList = new LinkedList<>();
+        waveRecorder = new WaveRecorder(refreshRatio, maxDuration, compressReducer);
+        WaveDynamics dynamics = waveRecorder.getDynamics();
+        dynamics.setAttackTime(attackTime);
+        dynamics.setReleaseTime(releaseTime);
+        dynamics.setPeakHoldTime(peakHoldTime);
+        dynamics.setScale(amplitudeScale);
+        waveGeometry = new WaveGeometry();
+        waveGeometry.setChannelLayout(channelLayout);
+        frameDriver = new WaveFrameDriver(frameTimer, waveRecorder, waveGeometry);
+        waveTimeline = new WaveTimeline();
+        timelineWave = new float[0];
+        gestureDetector = new GestureDetector(context, timelineGestureListener);
+        scaleGestureDetector = new ScaleGestureDetector(context, timelineScaleListener);
+        scroller = new OverScroller(context);
     }
 
     @Override
     protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
         super.onLayout(changed, left, top, right, bottom);
         //计算波形最大高度 View高度的60%
-        maxWaveHeight = getHeight() / 2 * 0.6f;
+        float waveHeight = WaveRenderer.getMaxWaveHeight(getHeight());
+        boolean heightChanged = waveHeight != maxWaveHeight;
+        maxWaveHeight = waveHeight;
         //计算View能够容纳显示的最大波形个数
-        maxLines = (int) ((getWidth() - 10) / (dividerWidth));
+        int lines = WaveRenderer.getMaxLines(getWidth(), dividerWidth);
+        //旧版像素偏移数据需按新的高度换算
+        if (lines != maxLines || heightChanged && sourceWaveData != null && sourceWaveData.isPixelBased()) {
+            maxLines = lines;
+            //按新的宽度从金字塔重新采样
+            if (sourceKey != null)
+                decodeCachedWaveData(sourceKey);
+            else if (sourceWaveData != null)
+                decodeWaveData(sourceWaveData);
+        }
 
         HEIGHT_HALF = getHeight()/2;
         WIDTH = getWidth();
 
-        initDefaultWaveList();
+        //尺寸变化时丢弃缓存位图
+        if (cacheBitmap != null && (cacheBitmap.getWidth() != getWidth() || cacheBitmap.getHeight() != getHeight()))
+            releaseCache();
+        //仅在容量变化时重新分配
+        waveRecorder.setVisibleSize(maxLines);
+        waveGeometry.setBounds(WIDTH, HEIGHT_HALF, dividerWidth, maxWaveHeight, WaveRenderer.MIN_WAVE_HEIGHT);
+        if (timelineWave.length < maxLines + 1)
+            timelineWave = new float[maxLines + 1];
+        waveTimeline.setViewport(maxLines, dividerWidth);
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
-        drawBackground(canvas);
+        if (metricsListener == null) {
+            drawContent(canvas);
+            return;
+        }
+        long start = System.nanoTime();
+        drawContent(canvas);
+        metrics.lastDrawNanos = System.nanoTime() - start;
+        metrics.drawHistogram.record(metrics.lastDrawNanos);
+        metrics.samplesIngested = waveRecorder.getSamplesIngested();
+        metrics.samplesDropped = waveRecorder.getDroppedCount();
+        metricsListener.onFrame(metrics);
+    }
+
+    private void drawContent(Canvas canvas) {
+        WaveRenderer.drawBackground(canvas, backgroundColor, backgroundDrawable != null);
         if(mode == MODE_RECORDING) {
             paint.setColor(activeLineColor);
             //录制是否暂停
-            if (isRecordPause)
-                drawWave(canvas, compressLinkedList);
-            else
-                drawWave(canvas, linkedList);
+            if (isTimelineActive()) {
+                drawTimeline(canvas);
+            } else if (isRecordPause) {
+                updateGeometry(compressChannels != null ? compressChannels : compressWave);
+                if (!drawCachedWave(canvas, waveGeometry.getLineCount()))
+                    WaveRenderer.drawWave(canvas, waveGeometry, waveStyle, channelColors, paint);
+            } else if (waveRecorder.getChannelCount() > 1) {
+                //多声道所有声道的端点在同一次drawLines中画出
+                updateGeometry(waveRecorder.getVisibleWaves());
+                WaveRenderer.drawWave(canvas, waveGeometry, waveStyle, channelColors, paint);
+            } else if (!drawScrollWave(canvas)) {
+                updateGeometry(waveRecorder.getVisibleWave());
+                WaveRenderer.drawWave(canvas, waveGeometry, waveStyle, paint);
+            }
         } else if (mode == MODE_PLAYING) {
-            drawPlayWave(canvas, current_position);
+            updateGeometry(compressChannels != null ? compressChannels : compressWave);
+            int activeCount = Math.min(current_position + 1, waveGeometry.getLineCount());
+            if (!drawCachedWave(canvas, activeCount))
+                WaveRenderer.drawPlayWave(canvas, waveGeometry, waveStyle, activeCount, activeLineColor, inactiveLineColor, paint);
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (!isTimelineActive())
+            return super.onTouchEvent(event);
+        scaleGestureDetector.onTouchEvent(event);
+        gestureDetector.onTouchEvent(event);
+        return true;
+    }
+
+    @Override
+    public void computeScroll() {
+        super.computeScroll();
+        if (scroller.computeScrollOffset()) {
+            waveTimeline.setScroll(scroller.getCurrX());
+            waveGeometry.invalidate();
+            postInvalidateOnAnimation();
         }
     }
 
@@ -181,13 +360,69 @@ public class VoiceWaveView extends View {
         return true;
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        attached = true;
+        context.getApplicationContext().registerComponentCallbacks(componentCallbacks);
+        updateSuspended();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        attached = false;
+        context.getApplicationContext().unregisterComponentCallbacks(componentCallbacks);
+        //录制中被移除时结束录制，保留压缩结果
+        if (record_flag)
+            finishRecord();
+        releaseThread();
+        //位图归还共享池，重新添加后按需获取
+        releaseCache();
+        //落盘存储保留到setSpillFile(null)，配置变化或列表复用后重新添加时继续落盘
+        updateSuspended();
+    }
+
     @Override
     protected void onVisibilityChanged(View changedView, int visibility) {
         super.onVisibilityChanged(changedView, visibility);
-        if(visibility != VISIBLE) {
-            //可见性发生变化时 释放资源
-            isRecordPause = true;
-            releaseAll();
+        //不可见时只挂起帧回调，不释放录制数据
+        updateSuspended();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateSuspended();
+    }
+
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        SavedState state = new SavedState(super.onSaveInstanceState());
+        //缓存中的波形只保存key，其余波形以8位紧凑格式保存，恢复时无需重新计算
+        if (sourceKey != null) {
+            state.key = sourceKey;
+        } else {
+            WaveData waveData = getLastWaveData();
+            //二进制格式中已包含时长
+            if (waveData != null)
+                state.waveBytes = waveData.toBytes();
+        }
+        return state;
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable parcelable) {
+        if (!(parcelable instanceof SavedState)) {
+            super.onRestoreInstanceState(parcelable);
+            return;
+        }
+        SavedState state = (SavedState) parcelable;
+        super.onRestoreInstanceState(state.getSuperState());
+        if (state.key != null) {
+            drawCachedWaveData(state.key);
+        } else if (state.waveBytes != null) {
+            drawWaveData(WaveData.fromBytes(state.waveBytes));
         }
     }
 
@@ -201,21 +436,28 @@ public class VoiceWaveView extends View {
         mode = MODE_RECORDING;
         isRecordPause = false;
         duration = 0;
-        voiceDrawTask = new VoiceDrawTask();
-        linkedList.addAll(defaultLinkedList);
-        timer.schedule(voiceDrawTask, 200);
+        waveRecorder.start(maxLines);
+        spillErrorReported = false;
+        waveGeometry.invalidate();
+        pendingScrollCount = 0;
+        if (scrollBuffer != null)
+            scrollBuffer.invalidate();
+        frameTimer.reset();
+        record_flag = true;
+        postFrame();
     }
 
     /**
      * 停止录制
      */
     public void stopRecord() {
-        isRecordPause = true;
-        linkedList.clear();
+        if (record_flag)
+            finishRecord();
     }
 
     /**
-     * 录制波形高度设置 0-100%
+     * 录制波形高度设置 0-100%，可在多个线程中调用，写入之间加锁串行
+     * 不能与其他线程中的pushAmplitudes混用，高频输入应在单个线程中使用pushAmplitudes
      * @param percent
      */
     public void setWaveHeightPercent(int percent) {
@@ -225,25 +467,167 @@ public class VoiceWaveView extends View {
             else if (percent < 1)
                 percent = 1;
 
-            waveHeight = maxWaveHeight * percent / 100;
+            waveRecorder.offerShared(percent / 100f);
         }
     }
 
+    /**
+     * 批量写入振幅，适合AudioRecord回调等高频输入，调用线程不加锁也不分配对象
+     * 两次采样之间到达的振幅取峰值，不会丢失
+     * 只能有一个输入线程，队列满时多出的振幅被丢弃，多声道时按声道交错排列
+     * @param values 振幅 0-1
+     * @param offset
+     * @param count
+     */
+    public void pushAmplitudes(float[] values, int offset, int count) {
+        if (!isRecordPause)
+            waveRecorder.offer(values, offset, count);
+    }
+
+    /**
+     * 直接写入16位PCM数据，每refreshRatio时长计算一个振幅，与pushAmplitudes共用同一个输入线程
+     * 多声道时各声道分别计算振幅
+     * @param pcm 按setChannelCount的声道数交错排列的PCM
+     * @param offset
+     * @param length
+     * @param sampleRate 采样率
+     */
+    public void pushPcm(short[] pcm, int offset, int length, int sampleRate) {
+        if (!isRecordPause)
+            obtainPcmAnalyzer(sampleRate).process(pcm, offset, length, pcmSink);
+    }
+
+    /**
+     * 直接写入16位PCM数据，按缓冲区字节序读取position到limit之间的数据
+     * @param pcm 按setChannelCount的声道数交错排列的PCM
+     * @param sampleRate 采样率
+     */
+    public void pushPcm(ByteBuffer pcm, int sampleRate) {
+        if (!isRecordPause)
+            obtainPcmAnalyzer(sampleRate).process(pcm, pcmSink);
+    }
+
+    /**
+     * 设置PCM振幅计算方式，默认DBFS
+     * @param mode
+     */
+    public void setPcmAnalyzeMode(PcmAnalyzer.Mode mode) {
+        pcmAnalyzeMode = mode;
+    }
+
+    public PcmAnalyzer.Mode getPcmAnalyzeMode() {
+        return pcmAnalyzeMode;
+    }
+
+    /**
+     * @return 因队列已满被丢弃的振幅个数
+     */
+    public long getDroppedAmplitudeCount() {
+        return waveRecorder.getDroppedCount();
+    }
+
     /**
      * 启动录制波形播放，必须在stopRecord后或者达到最长录音时间后调用
      * @param waveData 准备播放的波形列表，传null则播放上次stopRecord后的列表
      */
     public void startPlay(WaveData waveData) {
+        startPlay(waveData, null);
+    }
+
+    /**
+     * 启动与音频同步的波形播放，每帧读取外部播放位置，不会与音频产生累计偏差
+     * @param waveData 准备播放的波形列表，传null则播放上次stopRecord后的列表
+     * @param provider 播放位置来源，如MediaPlayer::getCurrentPosition，传null则按帧时间计算
+     */
+    public void startPlay(WaveData waveData, PlaybackPositionProvider provider) {
         decodeWaveData(waveData);
+        positionProvider = provider;
+        startPlayInternal();
+    }
+
+    /**
+     * 播放缓存中的波形，按当前宽度重采样的结果也会被缓存
+     * @param key 通过WaveDataCache.put放入的key，如消息id
+     */
+    public void startPlayCached(String key) {
+        startPlayCached(key, null);
+    }
+
+    /**
+     * 播放缓存中的波形，并与外部播放位置同步
+     * @param key 通过WaveDataCache.put放入的key
+     * @param provider 播放位置来源，传null则按帧时间计算
+     */
+    public void startPlayCached(String key, PlaybackPositionProvider provider) {
+        if (decodeCachedWaveData(key)) {
+            positionProvider = provider;
+            startPlayInternal();
+        }
+    }
+
+    /**
+     * 跳转到指定播放位置，按帧时间播放时从该位置继续
+     * @param millis
+     */
+    public void seekTo(long millis) {
+        if (mode != MODE_PLAYING || compressWave == null)
+            return;
+        frameTimer.setElapsedMillis(millis);
+        providerClockAligned = false;
+        updatePlayPosition(millis);
+    }
+
+    /**
+     * 由外部推送播放位置，停止内部计时，适合在播放器进度回调中调用，录制中调用无效
+     * @param millis 当前播放位置(ms)
+     */
+    public void setPlayPosition(long millis) {
+        if (record_flag || compressWave == null || compressWave.length == 0)
+            return;
+        if (mode != MODE_PLAYING || play_flag) {
+            releaseThread();
+            mode = MODE_PLAYING;
+        }
+        updatePlayPosition(millis);
+    }
+
+    /**
+     * 设置按帧时间播放时的速度，对外部播放位置来源无效
+     * @param speed 如0.5、1、2
+     */
+    public void setPlaybackSpeed(float speed) {
+        frameTimer.setSpeed(speed);
+    }
+
+    public float getPlaybackSpeed() {
+        return frameTimer.getSpeed();
+    }
+
+    /**
+     * 停止播放，保留当前播放位置，使用外部播放位置来源时在播放器停止或出错时调用
+     */
+    public void stopPlay() {
+        if (mode != MODE_PLAYING || !play_flag)
+            return;
+        releaseThread();
+        isPlayPause = false;
+        invalidate();
+        if (metricsListener != null)
+            metricsListener.onPlayStopped(metrics);
+    }
 
-        if (compressLinkedList != null) {
+    private void startPlayInternal() {
+        if (compressWave != null && compressWave.length > 0) {
             releaseThread();
             mode = MODE_PLAYING;
             isPlayPause = false;
-            current_position = 1;
-            playSleepTime = duration / compressLinkedList.size();  //根据语音时长计算单个波纹间隔
-            voicePlayDrawTask = new VoicePlayDrawTask();  //语音播放画图线程初始化
-            timer.schedule(voicePlayDrawTask, 200);  //延迟200ms执行
+            current_position = 0;
+            frameTimer.reset();
+            frameDriver.resetExternalPosition();
+            providerClockAligned = false;
+            invalidate();
+            play_flag = true;
+            postFrame();
         }
     }
 
@@ -252,6 +636,88 @@ public class VoiceWaveView extends View {
      */
     public void pauseOrResumePlay() {
         isPlayPause = !isPlayPause;
+        if (!play_flag)
+            return;
+        if (isPlayPause) {
+            //暂停时不再请求帧回调
+            frameTimer.pause();
+            frameClock.removeFrameCallback(frameCallback);
+        } else {
+            frameDriver.resetExternalPosition();
+            providerClockAligned = false;
+            postFrame();
+        }
+    }
+
+    /**
+     * 设置波形压缩的合并方式，下次startRecord时生效
+     * @param reducer 平均值、峰值或均方根
+     */
+    public void setCompressReducer(WaveReducer reducer) {
+        compressReducer = reducer;
+        waveRecorder.setReducer(reducer);
+    }
+
+    public WaveReducer getCompressReducer() {
+        return compressReducer;
+    }
+
+    /**
+     * 录制样本少于可显示波形个数时，是否线性插值补齐，默认重复相邻样本
+     * @param interpolate
+     */
+    public void setCompressInterpolate(boolean interpolate) {
+        waveRecorder.setInterpolate(interpolate);
+    }
+
+    public boolean isCompressInterpolate() {
+        return waveRecorder.isInterpolate();
+    }
+
+    /**
+     * 启用位图缓存后，暂停和播放状态下波形只绘制一次，之后每帧只按播放进度裁剪贴图
+     * 录制时使用环形滚动位图，每帧只画新增的波形再分两段贴图
+     * 所有View共享WaveBitmapCache的内存预算，超出预算时自动退回直接绘制
+     * @param cacheEnabled
+     */
+    public void setCacheEnabled(boolean cacheEnabled) {
+        this.cacheEnabled = cacheEnabled;
+        if (!cacheEnabled)
+            releaseCache();
+        invalidate();
+    }
+
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+
+    /**
+     * 设置运行指标监听，包括绘制耗时、输入与丢弃的振幅个数、压缩耗时和播放偏差
+     * 不设置时不做任何统计，每帧分配检查见单元测试
+     * @param listener 传null关闭统计
+     */
+    public void setMetricsListener(WaveMetricsListener listener) {
+        if (listener != null && metricsListener == null)
+            metrics = new WaveMetrics();
+        else if (listener == null && metricsListener != null)
+            metrics = null;
+        metricsListener = listener;
+    }
+
+    /**
+     * @return 当前统计的指标，未设置监听时返回null
+     */
+    public WaveMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 替换帧时钟，默认使用Choreographer，测试时可传入手动推进的时钟
+     * @param frameClock
+     */
+    public void setFrameClock(FrameClock frameClock) {
+        releaseThread();
+        this.frameClock = frameClock;
     }
 
     /**
@@ -259,8 +725,21 @@ public class VoiceWaveView extends View {
      * @return
      */
     public WaveData getLastWaveData() {
-        if (compressLinkedList != null && !compressLinkedList.isEmpty()) {
-            return new WaveData(compressLinkedList, duration);
+        //压缩波形可能位于复用的缓冲区，优先返回原始数据
+        if (sourceWaveData != null)
+            return sourceWaveData;
+        WaveData cached = sourceKey != null ? waveDataCache.get(sourceKey) : null;
+        if (cached != null) {
+            return cached;
+        } else if (compressChannels != null) {
+            //各声道可能位于复用的缓冲区，复制后返回
+            float[][] channels = new float[compressChannels.length][];
+            for (int c = 0; c < channels.length; c++) {
+                channels[c] = compressChannels[c].clone();
+            }
+            return newWaveData(channels);
+        } else if (compressWave != null && compressWave.length > 0) {
+            return newWaveData(new float[][]{compressWave});
         } else {
             return null;
         }
@@ -273,130 +752,476 @@ public class VoiceWaveView extends View {
     public void drawWaveData(WaveData waveData) {
         decodeWaveData(waveData);
 
-        if (compressLinkedList != null) {
+        if (compressWave != null) {
             mode = MODE_RECORDING;
             isRecordPause = true;
+            updateTimelineSource(null);
             invalidate();
         }
     }
 
+    /**
+     * 画出缓存中的波形，适合列表中反复绑定，命中时不需要解码也不分配内存
+     * @param key 通过WaveDataCache.put放入的key，如消息id
+     * @return 缓存未命中时返回false，调用方可put后重试
+     */
+    public boolean drawCachedWaveData(String key) {
+        if (!decodeCachedWaveData(key))
+            return false;
+        mode = MODE_RECORDING;
+        isRecordPause = true;
+        updateTimelineSource(null);
+        invalidate();
+        return true;
+    }
+
+    /**
+     * 设置录制的声道数，只能在录制开始前调用，之后pushAmplitudes按声道交错写入
+     * @param channelCount 声道数，如立体声或双方通话为2
+     */
+    public void setChannelCount(int channelCount) {
+        if (record_flag)
+            throw new IllegalStateException("can not change channel count while recording");
+        waveRecorder.setChannelCount(channelCount);
+    }
+
+    public int getChannelCount() {
+        return waveRecorder.getChannelCount();
+    }
+
+    /**
+     * 设置多声道排列方式：上下镜像、分轨排列或叠加
+     * @param layout
+     */
+    public void setChannelLayout(ChannelLayout layout) {
+        channelLayout = layout;
+        waveGeometry.setChannelLayout(layout);
+        invalidate();
+    }
+
+    public ChannelLayout getChannelLayout() {
+        return channelLayout;
+    }
+
+    /**
+     * 设置多声道各声道的颜色，叠加排列时用于区分声道，个数不足时循环使用
+     * @param colors 传null时所有声道使用activeLineColor
+     */
+    public void setChannelColors(int... colors) {
+        channelColors = colors;
+        cacheDirty = true;
+        invalidate();
+    }
+
+    /**
+     * 设置波形样式，内置样式见WaveStyle.create，也可传入自定义样式
+     * @param style 基于Path的样式不能在多个View之间共享
+     */
+    public void setWaveStyle(WaveStyle style) {
+        waveStyle = style != null ? style : WaveStyle.LINE;
+        waveStyle.applyTo(paint);
+        cacheDirty = true;
+        if (scrollBuffer != null)
+            scrollBuffer.invalidate();
+        invalidate();
+    }
+
+    public WaveStyle getWaveStyle() {
+        return waveStyle;
+    }
+
+    /**
+     * 设置振幅上升时间常数，平滑突然变大的输入，不需要再另开线程平滑后调用setWaveHeightPercent
+     * @param millis 0表示立即跟随
+     */
+    public void setAttackTime(int millis) {
+        waveRecorder.getDynamics().setAttackTime(millis);
+    }
+
+    public int getAttackTime() {
+        return waveRecorder.getDynamics().getAttackTime();
+    }
+
+    /**
+     * 设置振幅下降时间常数，输入变小时波形缓慢回落
+     * @param millis 0表示立即跟随
+     */
+    public void setReleaseTime(int millis) {
+        waveRecorder.getDynamics().setReleaseTime(millis);
+    }
+
+    public int getReleaseTime() {
+        return waveRecorder.getDynamics().getReleaseTime();
+    }
+
+    /**
+     * 设置峰值保持时间，之后按下降时间常数回落
+     * @param millis 0表示不保持
+     */
+    public void setPeakHoldTime(int millis) {
+        waveRecorder.getDynamics().setPeakHoldTime(millis);
+    }
+
+    public int getPeakHoldTime() {
+        return waveRecorder.getDynamics().getPeakHoldTime();
+    }
+
+    /**
+     * 设置振幅缩放方式，DB时低音量部分更明显
+     * @param scale
+     */
+    public void setAmplitudeScale(AmplitudeScale scale) {
+        waveRecorder.getDynamics().setScale(scale);
+    }
+
+    public AmplitudeScale getAmplitudeScale() {
+        return waveRecorder.getDynamics().getScale();
+    }
+
+    /**
+     * 设置最大录制时间
+     * @param seconds 秒，0表示不限制，配合setSpillFile可长时间录制
+     */
+    public void setMaxDuration(int seconds) {
+        maxDuration = Math.max(seconds, 0);
+        waveRecorder.setMaxDuration(maxDuration);
+    }
+
+    public int getMaxDuration() {
+        return maxDuration;
+    }
+
+    /**
+     * 设置录制原始波形的落盘文件，如context.getCacheDir()下的文件，内存中只保留可见波形、压缩摘要和一个分段，
+     * 录制时长不再受内存限制。写入和读回都在后台线程完成，停止录制时未写满的分段也会写入，
+     * 异常退出后可通过SpillingSampleStore.recover恢复。View移除后仍保留落盘存储，不再使用时调用setSpillFile(null)关闭文件
+     * @param file 落盘文件，已存在时会被清空；为null时恢复为内存存储
+     * @throws IOException 文件无法打开
+     */
+    public void setSpillFile(File file) throws IOException {
+        if (record_flag)
+            throw new IllegalStateException("can not change spill file while recording");
+        if (spillWave != null) {
+            spillWave.close();
+            spillWave = null;
+        }
+        if (file != null)
+            spillWave = new SpillingSampleStore(file, (int) refreshRatio);
+        waveRecorder.setSampleStore(spillWave);
+    }
+
+    /**
+     * 设置落盘文件读写出错的回调，如磁盘已满，出错后录制继续但落盘的原始波形不完整
+     * @param listener
+     */
+    public void setSpillErrorListener(SpillErrorListener listener) {
+        spillErrorListener = listener;
+    }
+
+    /**
+     * @return 当前录制的原始波形，落盘存储时按需从文件读取
+     */
+    public SampleStore getRecordSamples() {
+        return waveRecorder.getSampleStore();
+    }
+
+    /**
+     * 启用时间轴，录制结束或画出波形数据后可以左右滑动、惯性滚动和双指缩放查看，
+     * 需在录制前启用才能查看全分辨率波形，否则使用WaveData中的波形
+     * @param timelineEnabled
+     */
+    public void setTimelineEnabled(boolean timelineEnabled) {
+        if (this.timelineEnabled == timelineEnabled)
+            return;
+        this.timelineEnabled = timelineEnabled;
+        updateTimelineSource(null);
+        invalidate();
+    }
+
+    public boolean isTimelineEnabled() {
+        return timelineEnabled;
+    }
+
+    /**
+     * 替换使用的波形缓存，默认为WaveDataCache.getDefault()
+     * @param waveDataCache
+     */
+    public void setWaveDataCache(WaveDataCache waveDataCache) {
+        this.waveDataCache = waveDataCache;
+    }
+
+    public WaveDataCache getWaveDataCache() {
+        return waveDataCache;
+    }
+
     /********************* 内部方法 *********************/
 
+    private boolean decodeCachedWaveData(String key) {
+        float[] amplitudes = waveDataCache.getAmplitudes(key, maxLines);
+        if (amplitudes == null)
+            return false;
+        sourceKey = key;
+        sourceWaveData = null;
+        drawWaveData = null;
+        compressWave = amplitudes;
+        //各声道的重采样结果同样由缓存保存
+        compressChannels = waveDataCache.getChannels(key, maxLines);
+        duration = waveDataCache.getDuration(key);
+        waveGeometry.invalidate();
+        return true;
+    }
+
     private void decodeWaveData(WaveData waveData) {
         if (waveData != null) {
-            compressLinkedList = waveData.getWaveList();
+            sourceKey = null;
+            sourceWaveData = waveData;
+            drawWaveData = WaveRenderer.toViewWaveData(waveData, maxWaveHeight);
+            //波形个数与View不一致时通过金字塔重采样到复用的缓冲区
+            if (maxLines > 0) {
+                compressWave = drawWaveData.getAmplitudes(maxLines, resampleWave);
+                if (compressWave != drawWaveData.getAmplitudes())
+                    resampleWave = compressWave;
+            } else {
+                compressWave = drawWaveData.getAmplitudes();
+            }
+            compressChannels = decodeChannels(drawWaveData);
             duration = waveData.getDuration();
+            waveGeometry.invalidate();
         }
     }
 
-    private void initDefaultWaveList() {
-        for (int i = 0; i < maxLines; i++) {
-            defaultLinkedList.add(new WaveBean(1));
+    /**
+     * 生成录制结果，getWaveList按当前波形最大高度换算为像素偏移，与旧版保存的数据一致
+     */
+    private WaveData newWaveData(float[][] channels) {
+        WaveData waveData = new WaveData(channels, duration);
+        waveData.setWaveHeight(maxWaveHeight);
+        return waveData;
+    }
+
+    /**
+     * 多声道时按View宽度重新采样各声道
+     * @return 单声道时返回null
+     */
+    private float[][] decodeChannels(WaveData waveData) {
+        if (waveData == null || waveData.getChannelCount() == 1)
+            return null;
+        int channelCount = waveData.getChannelCount();
+        if (decodedChannels.length != channelCount) {
+            decodedChannels = new float[channelCount][];
+            float[][] buffers = new float[channelCount][];
+            System.arraycopy(resampleChannels, 0, buffers, 0, Math.min(resampleChannels.length, channelCount));
+            resampleChannels = buffers;
+        }
+        for (int c = 0; c < channelCount; c++) {
+            if (maxLines > 0) {
+                float[] channel = waveData.getChannelAmplitudes(c, maxLines, resampleChannels[c]);
+                if (channel != waveData.getChannelAmplitudes(c))
+                    resampleChannels[c] = channel;
+                decodedChannels[c] = channel;
+            } else {
+                decodedChannels[c] = waveData.getChannelAmplitudes(c);
+            }
         }
+        return decodedChannels;
     }
 
     /**
-     * 根据波形链表话波形
-     * @param canvas
-     * @param waveBeanList
+     * 数据源或数据变化时重新计算波形端点
+     * @param source 可见波形缓冲区或压缩波形数组
      */
-    private void drawWave(Canvas canvas, List<WaveBean> waveBeanList) {
-        if (waveBeanList == null)
+    private void updateGeometry(Object source) {
+        if (source == geometrySource && !waveGeometry.isDirty())
             return;
-        int i = waveBeanList.size();
-        for (WaveBean bean : waveBeanList) {
-            //从表头开始画
-            canvas.drawLine(WIDTH - i * dividerWidth, HEIGHT_HALF - bean.getY_offset(), WIDTH - i * dividerWidth, HEIGHT_HALF + bean.getY_offset(), paint);
-            i--;
-        }
+        geometrySource = source;
+        cacheDirty = true;
+        if (source instanceof FloatRingBuffer)
+            waveGeometry.build((FloatRingBuffer) source);
+        else if (source instanceof float[])
+            waveGeometry.build((float[]) source, ((float[]) source).length);
+        else if (source instanceof FloatRingBuffer[])
+            waveGeometry.build((FloatRingBuffer[]) source);
+        else if (source instanceof float[][])
+            waveGeometry.build((float[][]) source);
+        else if (source instanceof WaveTimeline)
+            waveGeometry.build(timelineWave, waveTimeline.fillVisible(timelineWave));
+        else
+            waveGeometry.clear();
     }
 
     /**
-     * 根据当前播放位置画播放状态波形图
+     * 用缓存位图画波形，已播放部分和待播放部分各裁剪贴图一次
      * @param canvas
-     * @param current_position
+     * @param activeCount 已播放的波形个数
+     * @return 缓存不可用时返回false
      */
-    private void drawPlayWave(Canvas canvas, int current_position) {
-        if (compressLinkedList == null)
-            return;
-        int i = compressLinkedList.size();
-        for (WaveBean bean : compressLinkedList) {
-            //从表头开始画
-            if (compressLinkedList.size() - i <= current_position)
-                paint.setColor(activeLineColor);
-            else
-                paint.setColor(inactiveLineColor);
-            canvas.drawLine(WIDTH - i * dividerWidth, HEIGHT_HALF - bean.getY_offset(), WIDTH - i * dividerWidth, HEIGHT_HALF + bean.getY_offset(), paint);
-            i--;
+    private boolean drawCachedWave(Canvas canvas, int activeCount) {
+        int lineCount = waveGeometry.getLineCount();
+        if (!cacheEnabled || lineCount == 0)
+            return false;
+        //ALPHA_8位图只能整体着色，各声道颜色不同时直接绘制
+        if (channelColors != null && waveGeometry.getChannelCount() > 1 && mode != MODE_PLAYING)
+            return false;
+        if (cacheBitmap == null) {
+            cacheBitmap = WaveBitmapCache.acquire(getWidth(), getHeight());
+            if (cacheBitmap == null)
+                return false;
+            cacheCanvas = new Canvas(cacheBitmap);
+            cacheDirty = true;
+        }
+        if (cacheDirty) {
+            cacheBitmap.eraseColor(Color.TRANSPARENT);
+            paint.setColor(Color.BLACK);
+            waveStyle.drawAll(cacheCanvas, waveGeometry, paint);
+            cacheDirty = false;
         }
+        //播放分界位于最后一个已播放波形和第一个待播放波形之间
+        float split = activeCount >= lineCount ? WIDTH : waveGeometry.getPoints()[activeCount << 2] - dividerWidth / 2;
+        int saveCount = canvas.save();
+        canvas.clipRect(0, 0, split, getHeight());
+        cachePaint.setColor(activeLineColor);
+        canvas.drawBitmap(cacheBitmap, 0, 0, cachePaint);
+        canvas.restoreToCount(saveCount);
+        if (split < WIDTH) {
+            saveCount = canvas.save();
+            canvas.clipRect(split, 0, WIDTH, getHeight());
+            cachePaint.setColor(inactiveLineColor);
+            canvas.drawBitmap(cacheBitmap, 0, 0, cachePaint);
+            canvas.restoreToCount(saveCount);
+        }
+        return true;
+    }
+
+    private boolean isTimelineActive() {
+        return timelineEnabled && mode == MODE_RECORDING && isRecordPause && waveTimeline.hasSource();
     }
 
     /**
-     * 画背景
+     * 画时间轴视口内的波形，端点只在滚动或缩放后重新计算
      * @param canvas
      */
-    private void drawBackground(Canvas canvas) {
-        if(canvas != null) {
-            if (backgroundDrawable == null)
-                canvas.drawColor(backgroundColor);
+    private void drawTimeline(Canvas canvas) {
+        updateGeometry(waveTimeline);
+        //端点按右对齐计算，平移到视口左侧并加上不足一个间距的滚动偏移
+        float dx = 0;
+        if (waveTimeline.getTotalBars() > maxLines)
+            dx = (waveGeometry.getLineCount() - maxLines) * dividerWidth - waveTimeline.getScrollOffset();
+        int saveCount = canvas.save();
+        canvas.translate(dx, 0);
+        WaveRenderer.drawWave(canvas, waveGeometry, waveStyle, paint);
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * 更新时间轴数据源
+     * @param recorded 刚结束录制的全分辨率金字塔，为null时使用当前波形数据
+     */
+    private void updateTimelineSource(WavePyramid recorded) {
+        //丢弃尚未返回的后台读回结果
+        timelineRequest++;
+        scroller.forceFinished(true);
+        WavePyramid pyramid = null;
+        if (timelineEnabled) {
+            if (recorded != null) {
+                pyramid = recorded;
+            } else if (drawWaveData != null) {
+                pyramid = drawWaveData.getPyramid();
+            } else if (sourceKey != null) {
+                WaveData waveData = waveDataCache.get(sourceKey);
+                if (waveData != null)
+                    pyramid = waveData.getPyramid();
+            }
         }
+        waveTimeline.setSource(pyramid);
+        waveGeometry.invalidate();
     }
 
     /**
-     * 压缩波形生成MAX_LINES个的波形列表
-     * @return
+     * 由整段录制的原始波形生成金字塔，落盘存储时在后台线程读回并生成，完成前时间轴使用压缩波形
      */
-    private ArrayList<WaveBean> getCompressLinkedList() {
-        ArrayList<WaveBean> compressList = new ArrayList<>(maxLines);
-        if(allLinkedList.size() < maxLines) {
-            int remain_size = maxLines - allLinkedList.size();
-            if(remain_size >= allLinkedList.size()) {
-                int compress_ratio = (int) Math.ceil((double) remain_size / (double)allLinkedList.size());
-                for(WaveBean waveBean : allLinkedList) {
-                    if (compressList.size() < maxLines)
-                        compressList.add(waveBean);
-                    for(int i = 0; i < compress_ratio; i++) {
-                        if (compressList.size() < maxLines) {
-                            compressList.add(new WaveBean(waveBean.getY_offset()));
-                        }
-                    }
-                }
-            } else {
-                int compress_ratio = allLinkedList.size() / remain_size;
-                int current_position = 1;
-                for(WaveBean waveBean : allLinkedList) {
-                    if (compressList.size() < maxLines) {
-                        compressList.add(waveBean);
-                    }
-                    if(current_position % compress_ratio == 0) {
-                        if (compressList.size() < maxLines) {
-                            compressList.add(new WaveBean(waveBean.getY_offset()));
-                        }
+    private void updateRecordTimeline() {
+        SampleStore store = waveRecorder.getSampleStore();
+        int size = store.size();
+        if (size == 0 || !(store instanceof SpillingSampleStore)) {
+            WavePyramid pyramid = null;
+            if (size > 0) {
+                float[] samples = new float[size];
+                store.read(0, samples, 0, size);
+                pyramid = new WavePyramid(samples);
+            }
+            updateTimelineSource(pyramid);
+            return;
+        }
+        updateTimelineSource(null);
+        final int request = timelineRequest;
+        ((SpillingSampleStore) store).readAll(new SpillingSampleStore.ReadCallback() {
+            @Override
+            public void onRead(float[] samples) {
+                final WavePyramid pyramid = new WavePyramid(samples);
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (request != timelineRequest || !timelineEnabled)
+                            return;
+                        waveTimeline.setSource(pyramid);
+                        onTimelineChanged();
                     }
-                    current_position++;
-                }
+                });
             }
-            return compressList;
-        } else {
-            int compress_ratio = allLinkedList.size() / maxLines;
-            float average = 0;
-            for (int i = 1; i <= allLinkedList.size(); i++) {
-                if(i % compress_ratio == 0) {
-                    if(compressList.size() < maxLines) {
-                        average = average == 0 ? allLinkedList.get(i - 1).getY_offset() : average;
-                        if (compressList.size() < maxLines) {
-                            compressList.add(new WaveBean(average / compress_ratio));
-                        }
-                        average = 0;
-                    } else {
-                        return compressList;
+
+            @Override
+            public void onError(final IOException e) {
+                //落盘数据不完整时不显示全分辨率时间轴
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (request == timelineRequest)
+                            reportSpillError(e);
                     }
-                } else {
-                    average += allLinkedList.get(i-1).getY_offset();
-                }
+                });
             }
-            return compressList;
+        });
+    }
+
+    private void onTimelineChanged() {
+        waveGeometry.invalidate();
+        invalidate();
+    }
+
+    /**
+     * 用滚动位图画录制中的波形，只把上次绘制后新增的波形画进位图
+     * @param canvas
+     * @return 未启用缓存或超出位图预算时返回false
+     */
+    private boolean drawScrollWave(Canvas canvas) {
+        //只有逐条独立的样式可以只画新增的波形
+        if (!cacheEnabled || maxLines == 0 || !waveStyle.isBarStyle())
+            return false;
+        if (scrollBuffer == null)
+            scrollBuffer = new WaveScrollBuffer();
+        if (!scrollBuffer.prepare(maxLines, dividerWidth, getHeight(), maxWaveHeight)) {
+            pendingScrollCount = 0;
+            return false;
         }
+        scrollBuffer.update(waveRecorder.getVisibleWave(), pendingScrollCount, paint);
+        pendingScrollCount = 0;
+        cachePaint.setColor(activeLineColor);
+        scrollBuffer.draw(canvas, WIDTH - maxLines * dividerWidth, cachePaint);
+        return true;
+    }
+
+    /**
+     * 归还缓存位图到共享池
+     */
+    private void releaseCache() {
+        if (cacheBitmap != null) {
+            WaveBitmapCache.release(cacheBitmap);
+            cacheBitmap = null;
+            cacheCanvas = null;
+        }
+        cacheDirty = true;
+        if (scrollBuffer != null)
+            scrollBuffer.release();
     }
 
     /**
@@ -404,104 +1229,309 @@ public class VoiceWaveView extends View {
      */
     private void releaseAll() {
         releaseThread();
-        if(allLinkedList != null) {
-            allLinkedList.clear();
+        if(waveRecorder != null)
+            waveRecorder.clear();
+        //压缩波形可能与外部WaveData共享，只释放引用不修改内容
+        compressWave = null;
+        compressChannels = null;
+        sourceWaveData = null;
+        drawWaveData = null;
+        sourceKey = null;
+        if(waveTimeline != null)
+            waveTimeline.setSource(null);
+        releaseCache();
+        if(waveGeometry != null)
+            waveGeometry.invalidate();
+    }
+
+    /**
+     * 注册下一帧回调，挂起时不注册
+     */
+    private void postFrame() {
+        if (!suspended)
+            frameClock.postFrameCallback(frameCallback);
+    }
+
+    /**
+     * 根据是否添加到窗口和可见性挂起或恢复帧回调
+     * 挂起期间计时继续，恢复后录制帧一次补齐缺少的样本，播放帧直接跳到当前位置
+     */
+    private void updateSuspended() {
+        boolean hidden = !attached || !isShown() || getWindowVisibility() != VISIBLE;
+        if (hidden == suspended)
+            return;
+        suspended = hidden;
+        if (frameClock == null)
+            return;
+        if (suspended)
+            frameClock.removeFrameCallback(frameCallback);
+        else if (record_flag || (play_flag && !isPlayPause))
+            frameClock.postFrameCallback(frameCallback);
+    }
+
+    /**
+     * 内存紧张时释放可以重新生成的资源，波形数据保留压缩结果
+     * @param level
+     */
+    private void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            //位图缓存可随时重画
+            releaseCache();
+            WaveBitmapCache.trimTo(0);
         }
-        if(linkedList != null) {
-            linkedList.clear();
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE && !record_flag) {
+            //丢弃全分辨率原始波形，时间轴退回使用压缩波形
+            waveRecorder.clear();
+            updateTimelineSource(null);
+            waveDataCache.trimToSize(waveDataCache.getMaxBytes() / 2);
         }
-        if(compressLinkedList != null)
-            compressLinkedList.clear();
-
     }
 
+    private final ComponentCallbacks2 componentCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            trimMemory(level);
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+            trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+    };
+
     private void releaseThread() {
-        if(voiceDrawTask != null && record_flag)
-            voiceDrawTask.cancel();
-        if(voicePlayDrawTask != null && play_flag)
-            voicePlayDrawTask.cancel();
+        record_flag = false;
+        play_flag = false;
+        if(frameClock != null)
+            frameClock.removeFrameCallback(frameCallback);
     }
 
     /**
-     * 波形绘制线程
+     * 结束录制，压缩波形并画出
      */
-    private class VoiceDrawTask extends TimerTask {
+    private void finishRecord() {
+        releaseThread();
+        isRecordPause = true;
+        //录制结束后不再需要滚动位图
+        if (scrollBuffer != null)
+            scrollBuffer.release();
+        //压缩摘要已在录制过程中维护，这里只需O(maxLines)生成结果
+        long start = metricsListener != null ? System.nanoTime() : 0;
+        float[][] channels = waveRecorder.finishChannels();
+        duration = waveRecorder.getDuration();
+        //多声道时取各声道峰值作为播放进度和缓存使用的波形
+        sourceWaveData = newWaveData(channels);
+        drawWaveData = sourceWaveData;
+        compressWave = sourceWaveData.getAmplitudes();
+        compressChannels = channels.length > 1 ? channels : null;
+        if (metricsListener != null) {
+            metrics.compressNanos = System.nanoTime() - start;
+            metrics.samplesIngested = waveRecorder.getSamplesIngested();
+            metrics.samplesDropped = waveRecorder.getDroppedCount();
+            metricsListener.onRecordStopped(metrics);
+        }
+        sourceKey = null;
+        if (timelineEnabled)
+            updateRecordTimeline();
+        waveGeometry.invalidate();
+        invalidate();
+    }
 
-        public VoiceDrawTask() {
-            record_flag = true;
+    /**
+     * 录制帧：按固定逻辑间隔refreshRatio补齐本帧应采样的个数
+     * @param frameTimeNanos
+     */
+    private void doRecordFrame(long frameTimeNanos) {
+        int added = frameDriver.recordFrame(frameTimeNanos);
+        pendingScrollCount += added;
+        if (spillWave != null && spillWave.getError() != null)
+            reportSpillError(spillWave.getError());
+        duration = waveRecorder.getDuration();
+        //录制最大时间
+        if (waveRecorder.isFinished()) {
+            finishRecord();
+            return;
         }
+        //滚动位图路径不会计算端点，只在有新增波形时重画
+        if (added > 0)
+            invalidate();
+        postFrame();
+    }
 
-        @Override
-        public boolean cancel() {
-            //停止标记
-            record_flag = false;
-            return true;
+    private void reportSpillError(IOException e) {
+        if (spillErrorReported)
+            return;
+        spillErrorReported = true;
+        if (spillErrorListener != null)
+            spillErrorListener.onSpillError(e);
+    }
+
+    /**
+     * 采样率、声道数或计算方式变化时重新创建分析器，在输入线程调用
+     * @param sampleRate
+     * @return
+     */
+    private PcmAnalyzer obtainPcmAnalyzer(int sampleRate) {
+        PcmAnalyzer analyzer = pcmAnalyzer;
+        int channelCount = waveRecorder.getChannelCount();
+        if (analyzer == null || analyzer.getSampleRate() != sampleRate || analyzer.getChannelCount() != channelCount
+                || analyzer.getMode() != pcmAnalyzeMode) {
+            analyzer = new PcmAnalyzer(sampleRate, channelCount, (int) refreshRatio, pcmAnalyzeMode);
+            pcmAnalyzer = analyzer;
         }
+        return analyzer;
+    }
 
+    private final PcmAnalyzer.AmplitudeSink pcmSink = new PcmAnalyzer.AmplitudeSink() {
         @Override
-        public void run() {
-            while (record_flag) {
-                try {
-                    duration += refreshRatio;
-                    //录制最大时间
-                    if (duration/1000 >= maxDuration || isRecordPause) {
-                        //获得压缩后的波形并画出
-                        compressLinkedList = getCompressLinkedList();
-                        postInvalidate();
-                        isRecordPause = true;
-                        record_flag = false;
-                    } else {
-                        WaveBean wave = new WaveBean(waveHeight);
-                        //链表长度超过能显示的最大数
-                        if (linkedList.size() > maxLines) {
-                            //移除链表头
-                            linkedList.removeFirst();
-                        }
-                        allLinkedList.add(wave);
-                        //加入表尾
-                        linkedList.add(wave);
-                        postInvalidate();
-                        Thread.sleep(refreshRatio);
-                    }
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                }
+        public void onAmplitudes(float[] values, int offset, int count) {
+            waveRecorder.offer(values, offset, count);
+        }
+    };
+
+    /**
+     * 播放帧：根据已播放时长计算当前位置
+     * @param frameTimeNanos
+     */
+    private void doPlayFrame(long frameTimeNanos) {
+        boolean playing;
+        long clockMillis;
+        if (positionProvider != null) {
+            long position = positionProvider.getCurrentPosition();
+            //帧时钟独立计时，只用于统计外部播放位置相对vsync的漂移
+            clockMillis = frameTimer.update(frameTimeNanos);
+            if (!providerClockAligned) {
+                frameTimer.setElapsedMillis(position);
+                clockMillis = position;
+                providerClockAligned = true;
             }
+            playing = frameDriver.playFrameAt(frameTimeNanos, position, compressWave.length, duration);
+        } else {
+            playing = frameDriver.playFrame(frameTimeNanos, compressWave.length, duration);
+            clockMillis = frameDriver.getPlayMillis();
         }
+        long elapsed = frameDriver.getPlayMillis();
+        if (playing)
+            postFrame();
+        else
+            play_flag = false;
+        updatePlayPosition(elapsed);
+        if (metricsListener != null)
+            updatePlaybackDrift(clockMillis, compressWave.length);
+    }
+
+    /**
+     * 播放时间换算为波形位置 O(1)
+     * @param millis 播放位置(ms)
+     */
+    private void updatePlayPosition(long millis) {
+        int lastPosition = current_position;
+        current_position = WavePlayback.positionAt(millis, compressWave.length, duration);
+        //播放位置未跨过波形时不需要重画
+        if (current_position != lastPosition || !play_flag)
+            invalidate();
     }
 
     /**
-     * 录制波形播放线程
+     * 统计播放偏差：有外部播放位置时为播放器位置与对齐后帧时钟之差，即音频相对vsync的漂移，
+     * 按帧时间播放时为当前波形位置对应时间与帧时钟之差
+     * @param clockMillis 帧时钟累计时长(ms)
      */
-    private class VoicePlayDrawTask extends TimerTask {
+    private void updatePlaybackDrift(long clockMillis, int size) {
+        long audioMillis = positionProvider != null
+                ? frameDriver.getPlayMillis()
+                : WavePlayback.millisAt(current_position, size, duration);
+        metrics.playbackDriftMillis = audioMillis - Math.min(clockMillis, duration);
+        if (Math.abs(metrics.playbackDriftMillis) > Math.abs(metrics.maxPlaybackDriftMillis))
+            metrics.maxPlaybackDriftMillis = metrics.playbackDriftMillis;
+        if (!play_flag)
+            metricsListener.onPlayStopped(metrics);
+    }
 
-        public VoicePlayDrawTask() {
-            play_flag = true;
+    private final GestureDetector.SimpleOnGestureListener timelineGestureListener = new GestureDetector.SimpleOnGestureListener() {
+        @Override
+        public boolean onDown(MotionEvent e) {
+            scroller.forceFinished(true);
+            return true;
         }
 
         @Override
-        public boolean cancel() {
-            play_flag = false;
+        public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+            ViewParent parent = getParent();
+            if (parent != null)
+                parent.requestDisallowInterceptTouchEvent(true);
+            waveTimeline.scrollBy(distanceX);
+            onTimelineChanged();
             return true;
         }
 
         @Override
-        public void run() {
-            while(play_flag) {
-                try {
-                    if(!isPlayPause) {
-                        if (current_position == compressLinkedList.size())
-                            play_flag = false;
-                        else
-                            current_position++;
-                    }
-                    postInvalidate();
-                    Thread.sleep(playSleepTime);
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                }
-            }
+        public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
+            scroller.fling((int) waveTimeline.getScroll(), 0, (int) -velocityX, 0, 0, (int) waveTimeline.getMaxScroll(), 0, 0);
+            postInvalidateOnAnimation();
+            return true;
         }
+    };
+
+    private final ScaleGestureDetector.SimpleOnScaleGestureListener timelineScaleListener = new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+        @Override
+        public boolean onScale(ScaleGestureDetector detector) {
+            //双指张开放大 每个波形覆盖的样本变少
+            float focusX = detector.getFocusX() - (WIDTH - maxLines * dividerWidth);
+            waveTimeline.setSamplesPerBar(waveTimeline.getSamplesPerBar() / detector.getScaleFactor(), focusX);
+            onTimelineChanged();
+            return true;
+        }
+    };
+
+    private final FrameClock.FrameCallback frameCallback = new FrameClock.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (record_flag)
+                doRecordFrame(frameTimeNanos);
+            else if (play_flag && !isPlayPause && compressWave != null)
+                doPlayFrame(frameTimeNanos);
+        }
+    };
+
+    /**
+     * 配置变化时保存的波形，只保存缓存key或紧凑二进制格式
+     */
+    static class SavedState extends BaseSavedState {
+        String key;
+        byte[] waveBytes;
+
+        SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        private SavedState(Parcel in) {
+            super(in);
+            key = in.readString();
+            waveBytes = in.createByteArray();
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            out.writeString(key);
+            out.writeByteArray(waveBytes);
+        }
+
+        public static final Parcelable.Creator<SavedState> CREATOR = new Parcelable.Creator<SavedState>() {
+            @Override
+            public SavedState createFromParcel(Parcel in) {
+                return new SavedState(in);
+            }
+
+            @Override
+            public SavedState[] newArray(int size) {
+                return new SavedState[size];
+            }
+        };
     }
 }
-
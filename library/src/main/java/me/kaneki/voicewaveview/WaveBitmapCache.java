@@ -0,0 +1,94 @@
+package me.kaneki.voicewaveview;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayList;
+
+/**
+ * @author kaneki
+ * @Desctription 所有VoiceWaveView共享的波形位图缓存，统一受内存预算限制
+ * 位图为ALPHA_8格式，只保存波形形状，颜色在绘制时由Paint决定
+ */
+public final class WaveBitmapCache {
+
+    //默认内存预算 2MB
+    private static final long DEFAULT_MAX_BYTES = 2 * 1024 * 1024;
+
+    private static long maxBytes = DEFAULT_MAX_BYTES;
+    //已分配位图的总字节数，包括空闲池中的位图
+    private static long usedBytes;
+    //已释放、可复用的位图
+    private static final ArrayList<Bitmap> freeBitmaps = new ArrayList<>();
+
+    private WaveBitmapCache() {
+    }
+
+    /**
+     * 设置所有View共享的缓存内存预算
+     * @param bytes
+     */
+    public static synchronized void setMaxBytes(long bytes) {
+        maxBytes = bytes;
+        trimTo(maxBytes);
+    }
+
+    public static synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public static synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * 获取一张指定大小的位图，优先复用空闲位图
+     * @return 超出内存预算时返回null，调用方应退回直接绘制
+     */
+    static synchronized Bitmap acquire(int width, int height) {
+        if (width <= 0 || height <= 0)
+            return null;
+        for (int i = freeBitmaps.size() - 1; i >= 0; i--) {
+            Bitmap bitmap = freeBitmaps.get(i);
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height) {
+                freeBitmaps.remove(i);
+                return bitmap;
+            }
+        }
+        long size = (long) width * height;
+        //淘汰空闲位图腾出预算
+        trimTo(maxBytes - size);
+        if (usedBytes + size > maxBytes)
+            return null;
+        Bitmap bitmap;
+        try {
+            bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+        } catch (OutOfMemoryError error) {
+            return null;
+        }
+        usedBytes += size;
+        return bitmap;
+    }
+
+    /**
+     * 归还位图到空闲池，可被其他View复用
+     * @param bitmap
+     */
+    static synchronized void release(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled())
+            return;
+        freeBitmaps.add(bitmap);
+        trimTo(maxBytes);
+    }
+
+    /**
+     * 回收空闲位图，直到已用字节数不超过limit
+     * @param limit
+     */
+    static synchronized void trimTo(long limit) {
+        while (usedBytes > limit && !freeBitmaps.isEmpty()) {
+            Bitmap bitmap = freeBitmaps.remove(0);
+            usedBytes -= (long) bitmap.getWidth() * bitmap.getHeight();
+            bitmap.recycle();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package me.kaneki.voicewaveview;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+
+import me.kaneki.voicewaveview.core.WaveDataCache;
+import me.kaneki.voicewaveview.core.WaveGeometry;
+import me.kaneki.voicewaveview.entity.WaveData;
+
+/**
+ * @author kaneki
+ * @Desctription 静态波形Drawable，可直接设置给TextView或ImageView，不需要View也不创建线程
+ */
+public class WaveDrawable extends Drawable {
+
+    private final static float DEFAULT_WAVE_WIDTH = 3.0f;
+    private final static float DEFAULT_WAVE_DIVIDER_WIDTH = 8.0f;
+
+    private final Paint paint;
+    private final WaveGeometry geometry = new WaveGeometry();
+
+    private WaveData waveData;
+    private String cacheKey;
+    private WaveDataCache waveDataCache;
+    //按当前宽度重采样后的振幅
+    private float[] amplitudes;
+
+    private int backgroundColor = Color.TRANSPARENT;
+    private int activeLineColor = Color.parseColor("#ffffff");
+    private int inactiveLineColor = Color.parseColor("#99ffffff");
+    private float dividerWidth = DEFAULT_WAVE_DIVIDER_WIDTH;
+    //已播放比例 0-1
+    private float progress = 1;
+    private int maxLines;
+
+    public WaveDrawable() {
+        paint = WaveRenderer.createWavePaint(DEFAULT_WAVE_WIDTH);
+    }
+
+    public void setWaveData(WaveData waveData) {
+        this.waveData = waveData;
+        this.cacheKey = null;
+        updateAmplitudes();
+    }
+
+    /**
+     * 使用缓存中的波形
+     * @param waveDataCache
+     * @param key
+     */
+    public void setCachedWaveData(WaveDataCache waveDataCache, String key) {
+        this.waveDataCache = waveDataCache;
+        this.cacheKey = key;
+        this.waveData = null;
+        updateAmplitudes();
+    }
+
+    public void setColors(int backgroundColor, int activeLineColor, int inactiveLineColor) {
+        this.backgroundColor = backgroundColor;
+        this.activeLineColor = activeLineColor;
+        this.inactiveLineColor = inactiveLineColor;
+        invalidateSelf();
+    }
+
+    public void setLineWidth(float lineWidth) {
+        paint.setStrokeWidth(lineWidth);
+        invalidateSelf();
+    }
+
+    public void setDividerWidth(float dividerWidth) {
+        this.dividerWidth = dividerWidth;
+        onBoundsChange(getBounds());
+    }
+
+    /**
+     * @param progress 已播放比例 0-1，已播放部分使用activeLineColor
+     */
+    public void setProgress(float progress) {
+        this.progress = Math.max(Math.min(progress, 1), 0);
+        invalidateSelf();
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        int lines = WaveRenderer.getMaxLines(bounds.width(), dividerWidth);
+        geometry.setBounds(bounds.width(), bounds.height() / 2, dividerWidth,
+                WaveRenderer.getMaxWaveHeight(bounds.height()), WaveRenderer.MIN_WAVE_HEIGHT);
+        if (lines != maxLines) {
+            maxLines = lines;
+            updateAmplitudes();
+        } else {
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        Rect bounds = getBounds();
+        int saveCount = canvas.save();
+        canvas.translate(bounds.left, bounds.top);
+        if (Color.alpha(backgroundColor) != 0)
+            WaveRenderer.drawBackground(canvas, backgroundColor, false);
+        if (amplitudes != null) {
+            if (geometry.isDirty())
+                geometry.build(amplitudes, amplitudes.length);
+            int activeCount = Math.round(progress * geometry.getLineCount());
+            WaveRenderer.drawPlayWave(canvas, geometry, activeCount, activeLineColor, inactiveLineColor, paint);
+        }
+        canvas.restoreToCount(saveCount);
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        paint.setAlpha(alpha);
+        invalidateSelf();
+    }
+
+    @Override
+    public void setColorFilter(ColorFilter colorFilter) {
+        paint.setColorFilter(colorFilter);
+        invalidateSelf();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    private void updateAmplitudes() {
+        if (cacheKey != null)
+            amplitudes = waveDataCache.getAmplitudes(cacheKey, maxLines);
+        else if (waveData != null)
+            amplitudes = maxLines > 0 ? waveData.getAmplitudes(maxLines) : waveData.getAmplitudes();
+        else
+            amplitudes = null;
+        geometry.invalidate();
+        invalidateSelf();
+    }
+}
@@ -0,0 +1,65 @@
+package me.kaneki.voicewaveview;
+
+import me.kaneki.voicewaveview.core.FrameTimeHistogram;
+
+/**
+ * @author kaneki
+ * @Desctription VoiceWaveView运行指标，只在设置了WaveMetricsListener时统计
+ * 回调中传入的是同一个实例，需要保存时请自行拷贝数值
+ */
+public class WaveMetrics {
+
+    //onDraw耗时直方图
+    final FrameTimeHistogram drawHistogram = new FrameTimeHistogram();
+    long lastDrawNanos;
+    //本次录制从输入队列读取的振幅个数
+    long samplesIngested;
+    //因输入队列已满被丢弃的振幅个数
+    long samplesDropped;
+    //最近一次停止录制生成压缩波形的耗时
+    long compressNanos;
+    //播放偏差(ms)，负数表示落后：有外部播放位置时为播放器位置与帧时钟之差，否则为波形位置的取整误差
+    long playbackDriftMillis;
+    long maxPlaybackDriftMillis;
+
+    public FrameTimeHistogram getDrawHistogram() {
+        return drawHistogram;
+    }
+
+    public long getLastDrawNanos() {
+        return lastDrawNanos;
+    }
+
+    public long getSamplesIngested() {
+        return samplesIngested;
+    }
+
+    public long getSamplesDropped() {
+        return samplesDropped;
+    }
+
+    public long getCompressNanos() {
+        return compressNanos;
+    }
+
+    public long getPlaybackDriftMillis() {
+        return playbackDriftMillis;
+    }
+
+    public long getMaxPlaybackDriftMillis() {
+        return maxPlaybackDriftMillis;
+    }
+
+    /**
+     * 清空所有统计
+     */
+    public void reset() {
+        drawHistogram.reset();
+        lastDrawNanos = 0;
+        samplesIngested = 0;
+        samplesDropped = 0;
+        compressNanos = 0;
+        playbackDriftMillis = 0;
+        maxPlaybackDriftMillis = 0;
+    }
+}
@@ -0,0 +1,26 @@
+package me.kaneki.voicewaveview;
+
+/**
+ * @author kaneki
+ * @Desctription VoiceWaveView运行指标回调，均在主线程调用
+ */
+public interface WaveMetricsListener {
+
+    /**
+     * 每次onDraw结束后回调
+     * @param metrics
+     */
+    void onFrame(WaveMetrics metrics);
+
+    /**
+     * 停止录制并生成压缩波形后回调
+     * @param metrics
+     */
+    void onRecordStopped(WaveMetrics metrics);
+
+    /**
+     * 播放结束后回调
+     * @param metrics
+     */
+    void onPlayStopped(WaveMetrics metrics);
+}
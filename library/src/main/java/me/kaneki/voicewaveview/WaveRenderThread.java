@@ -0,0 +1,52 @@
+package me.kaneki.voicewaveview;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+/**
+ * @author kaneki
+ * @Desctription 所有VoiceWaveTextureView共享的渲染线程，无论有多少个控件都只有一个线程
+ * 线程内的ChoreographerFrameClock同样共享，每帧只注册一次vsync回调再分发给各控件
+ * 按引用计数启动和退出，只能在主线程调用acquire和release
+ */
+final class WaveRenderThread {
+
+    private static HandlerThread thread;
+    private static Handler handler;
+    private static int refCount;
+
+    private WaveRenderThread() {
+    }
+
+    /**
+     * 需要时启动渲染线程
+     * @return 渲染线程的Handler
+     */
+    static Handler acquire() {
+        if (handler == null) {
+            thread = new HandlerThread("VoiceWaveRender", Process.THREAD_PRIORITY_DISPLAY);
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+        refCount++;
+        return handler;
+    }
+
+    /**
+     * 最后一个使用者释放后，处理完已提交的任务再退出
+     */
+    static void release() {
+        if (refCount == 0 || --refCount > 0)
+            return;
+        final HandlerThread quitting = thread;
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                quitting.quit();
+            }
+        });
+        handler = null;
+        thread = null;
+    }
+}
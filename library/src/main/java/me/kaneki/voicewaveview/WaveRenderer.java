@@ -0,0 +1,149 @@
+package me.kaneki.voicewaveview;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import me.kaneki.voicewaveview.core.WaveGeometry;
+import me.kaneki.voicewaveview.entity.WaveData;
+
+/**
+ * @author kaneki
+ * @Desctription 无状态的波形绘制方法，VoiceWaveView和WaveDrawable共用
+ */
+public final class WaveRenderer {
+
+    //波形最小绘制高度(px)
+    public final static float MIN_WAVE_HEIGHT = 1.0f;
+
+    private WaveRenderer() {
+    }
+
+    /**
+     * 创建波形画笔
+     * @param lineWidth 波形线宽
+     * @return
+     */
+    public static Paint createWavePaint(float lineWidth) {
+        Paint paint = new Paint();
+        //设置抗锯齿
+        paint.setAntiAlias(true);
+        //设置粗体
+        paint.setFakeBoldText(true);
+        //设置画笔宽度
+        paint.setStrokeWidth(lineWidth);
+        return paint;
+    }
+
+    /**
+     * 波形最大高度为高度的60%
+     * @param height 绘制区域高度
+     * @return
+     */
+    public static float getMaxWaveHeight(int height) {
+        return height / 2 * 0.6f;
+    }
+
+    /**
+     * @param width 绘制区域宽度
+     * @param dividerWidth 波形间隔
+     * @return 能够容纳显示的最大波形个数
+     */
+    public static int getMaxLines(int width, float dividerWidth) {
+        return Math.max((int) ((width - 10) / dividerWidth), 0);
+    }
+
+    /**
+     * 旧版像素偏移数据按控件的波形最大高度换算为控件自己的副本，不修改调用方的WaveData
+     * @param waveData 调用方的数据
+     * @param maxWaveHeight 波形最大高度，未布局时为0，按最大像素偏移归一化
+     * @return 振幅数据直接返回原对象
+     */
+    public static WaveData toViewWaveData(WaveData waveData, float maxWaveHeight) {
+        if (!waveData.isPixelBased())
+            return waveData;
+        return new WaveData(waveData.getAmplitudesForHeight(maxWaveHeight, null), waveData.getDuration());
+    }
+
+    /**
+     * 画背景，有背景图时不画背景色
+     */
+    public static void drawBackground(Canvas canvas, int backgroundColor, boolean hasBackgroundDrawable) {
+        if (canvas != null && !hasBackgroundDrawable)
+            canvas.drawColor(backgroundColor);
+    }
+
+    /**
+     * 一次drawLines画出全部波形，包括所有声道
+     */
+    public static void drawWave(Canvas canvas, WaveGeometry geometry, Paint paint) {
+        WaveStyle.LINE.drawAll(canvas, geometry, paint);
+    }
+
+    /**
+     * 按样式画出全部波形，包括所有声道
+     */
+    public static void drawWave(Canvas canvas, WaveGeometry geometry, WaveStyle style, Paint paint) {
+        style.drawAll(canvas, geometry, paint);
+    }
+
+    /**
+     * 多声道按声道颜色各一次drawLines，未设置颜色时与drawWave相同
+     * @param channelColors 各声道颜色，个数不足时循环使用，可为null
+     */
+    public static void drawWave(Canvas canvas, WaveGeometry geometry, int[] channelColors, Paint paint) {
+        drawWave(canvas, geometry, WaveStyle.LINE, channelColors, paint);
+    }
+
+    /**
+     * 多声道按样式和声道颜色逐声道绘制，未设置颜色时所有声道使用画笔当前颜色
+     * @param channelColors 各声道颜色，个数不足时循环使用，可为null
+     */
+    public static void drawWave(Canvas canvas, WaveGeometry geometry, WaveStyle style, int[] channelColors, Paint paint) {
+        int channelCount = geometry.getChannelCount();
+        if (channelColors == null || channelColors.length == 0 || channelCount == 1) {
+            style.drawAll(canvas, geometry, paint);
+            return;
+        }
+        int lineCount = geometry.getLineCount();
+        if (lineCount == 0)
+            return;
+        for (int c = 0; c < channelCount; c++) {
+            paint.setColor(channelColors[c % channelColors.length]);
+            style.draw(canvas, geometry, c, 0, lineCount, paint);
+        }
+    }
+
+    /**
+     * 画播放状态波形图，每个声道的已播放和待播放部分各一次drawLines
+     * @param activeCount 已播放的波形个数
+     */
+    public static void drawPlayWave(Canvas canvas, WaveGeometry geometry, int activeCount,
+                                    int activeLineColor, int inactiveLineColor, Paint paint) {
+        drawPlayWave(canvas, geometry, WaveStyle.LINE, activeCount, activeLineColor, inactiveLineColor, paint);
+    }
+
+    /**
+     * 按样式画播放状态波形图，每个声道的已播放和待播放部分各画一次
+     * @param activeCount 已播放的波形个数
+     */
+    public static void drawPlayWave(Canvas canvas, WaveGeometry geometry, WaveStyle style, int activeCount,
+                                    int activeLineColor, int inactiveLineColor, Paint paint) {
+        int lineCount = geometry.getLineCount();
+        if (lineCount == 0)
+            return;
+        activeCount = Math.max(Math.min(activeCount, lineCount), 0);
+        int channelCount = geometry.getChannelCount();
+        if (activeCount > 0) {
+            paint.setColor(activeLineColor);
+            for (int c = 0; c < channelCount; c++) {
+                style.draw(canvas, geometry, c, 0, activeCount, paint);
+            }
+        }
+        if (activeCount < lineCount) {
+            paint.setColor(inactiveLineColor);
+            for (int c = 0; c < channelCount; c++) {
+                style.draw(canvas, geometry, c, activeCount, lineCount - activeCount, paint);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package me.kaneki.voicewaveview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+
+import me.kaneki.voicewaveview.core.FloatRingBuffer;
+
+/**
+ * @author kaneki
+ * @Desctription 录制时的滚动位图缓冲区，位图按波形个数分成环形槽位，起点随新波形移动
+ * 每个新波形只画进一个槽位，绘制时以偏移量分两段贴图，每帧开销与可见波形个数无关
+ * 位图为ALPHA_8格式，从WaveBitmapCache获取，颜色在贴图时由Paint决定
+ * 线宽大于波形间隔或抗锯齿边缘会越过槽位，每个波形裁剪在自己的槽位内，擦除槽位时不会残留
+ */
+final class WaveScrollBuffer {
+
+    private Bitmap bitmap;
+    private Canvas bitmapCanvas;
+    //擦除槽位用的画笔
+    private final Paint clearPaint;
+
+    //槽位个数 即可见波形个数
+    private int slots;
+    private float dividerWidth;
+    private float centerY;
+    private float maxWaveHeight;
+    //已写入的波形总数，下一个波形写入 head % slots
+    private long head;
+
+    WaveScrollBuffer() {
+        clearPaint = new Paint();
+        clearPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+    }
+
+    /**
+     * 确保位图与当前尺寸一致，尺寸变化时重新获取
+     * @return 超出位图缓存预算时返回false，调用方应退回直接绘制
+     */
+    boolean prepare(int slots, float dividerWidth, int height, float maxWaveHeight) {
+        int width = (int) Math.ceil(slots * dividerWidth);
+        if (bitmap != null && (bitmap.getWidth() != width || bitmap.getHeight() != height))
+            release();
+        if (bitmap == null) {
+            bitmap = WaveBitmapCache.acquire(width, height);
+            if (bitmap == null)
+                return false;
+            bitmapCanvas = new Canvas(bitmap);
+            head = -1;
+        }
+        if (this.slots != slots || this.dividerWidth != dividerWidth || this.maxWaveHeight != maxWaveHeight) {
+            this.slots = slots;
+            this.dividerWidth = dividerWidth;
+            this.maxWaveHeight = maxWaveHeight;
+            head = -1;
+        }
+        centerY = height / 2;
+        return true;
+    }
+
+    /**
+     * @return 位图内容已失效，需要用reset整体重画
+     */
+    boolean isInvalid() {
+        return head < 0;
+    }
+
+    void invalidate() {
+        head = -1;
+    }
+
+    /**
+     * 按可见波形整体重画，波形靠右排列
+     * @param wave 可见波形
+     * @param paint 波形画笔
+     */
+    void reset(FloatRingBuffer wave, Paint paint) {
+        bitmap.eraseColor(Color.TRANSPARENT);
+        paint.setColor(Color.BLACK);
+        int count = Math.min(wave.size(), slots);
+        int start = wave.size() - count;
+        for (int i = 0; i < count; i++) {
+            drawBar(slots - count + i, wave.get(start + i), paint);
+        }
+        head = slots;
+    }
+
+    /**
+     * 把上次更新后新增的波形画进位图，位图失效或新增个数超过可见波形时整体重画
+     * @param wave 可见波形
+     * @param added 新增波形个数
+     * @param paint 波形画笔
+     */
+    void update(FloatRingBuffer wave, int added, Paint paint) {
+        int size = wave.size();
+        if (isInvalid() || added >= size) {
+            reset(wave, paint);
+        } else {
+            for (int i = size - added; i < size; i++) {
+                append(wave.get(i), paint);
+            }
+        }
+    }
+
+    /**
+     * 追加一个新波形，覆盖最旧的槽位
+     * @param amplitude 振幅比例
+     * @param paint 波形画笔
+     */
+    void append(float amplitude, Paint paint) {
+        int slot = (int) (head % slots);
+        bitmapCanvas.drawRect(slot * dividerWidth, 0, (slot + 1) * dividerWidth, bitmap.getHeight(), clearPaint);
+        paint.setColor(Color.BLACK);
+        drawBar(slot, amplitude, paint);
+        head++;
+    }
+
+    /**
+     * 以最旧的槽位为起点分两段贴图
+     * @param canvas
+     * @param left 第一个波形在View中的横坐标
+     * @param paint 贴图画笔，颜色即波形颜色
+     */
+    void draw(Canvas canvas, float left, Paint paint) {
+        int origin = (int) (head % slots);
+        float x = left - dividerWidth / 2;
+        float split = x + (slots - origin) * dividerWidth;
+        float end = x + slots * dividerWidth;
+        int saveCount = canvas.save();
+        canvas.clipRect(x, 0, split, bitmap.getHeight());
+        canvas.drawBitmap(bitmap, x - origin * dividerWidth, 0, paint);
+        canvas.restoreToCount(saveCount);
+        if (origin > 0) {
+            saveCount = canvas.save();
+            canvas.clipRect(split, 0, end, bitmap.getHeight());
+            canvas.drawBitmap(bitmap, split, 0, paint);
+            canvas.restoreToCount(saveCount);
+        }
+    }
+
+    /**
+     * 归还位图到共享池
+     */
+    void release() {
+        if (bitmap != null) {
+            WaveBitmapCache.release(bitmap);
+            bitmap = null;
+            bitmapCanvas = null;
+        }
+        head = -1;
+    }
+
+    private void drawBar(int slot, float amplitude, Paint paint) {
+        float left = slot * dividerWidth;
+        float x = left + dividerWidth / 2;
+        float offset = Math.max(amplitude * maxWaveHeight, WaveRenderer.MIN_WAVE_HEIGHT);
+        //与擦除使用相同的边界
+        int saveCount = bitmapCanvas.save();
+        bitmapCanvas.clipRect(left, 0, left + dividerWidth, bitmap.getHeight());
+        bitmapCanvas.drawLine(x, centerY - offset, x, centerY + offset, paint);
+        bitmapCanvas.restoreToCount(saveCount);
+    }
+}
@@ -0,0 +1,228 @@
+package me.kaneki.voicewaveview;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+import me.kaneki.voicewaveview.core.WaveGeometry;
+
+/**
+ * @author kaneki
+ * @Desctription 波形样式，决定WaveGeometry中的端点如何画到Canvas上
+ * 自定义样式继承此类并实现draw，绘制时不应分配对象
+ * 基于Path的样式持有可复用的Path，每个View需使用各自的实例
+ */
+public abstract class WaveStyle {
+
+    //竖线
+    public final static int STYLE_LINE = 0;
+    //圆头竖线
+    public final static int STYLE_ROUNDED = 1;
+    //上下镜像的填充包络
+    public final static int STYLE_ENVELOPE = 2;
+    //贝塞尔平滑的填充包络
+    public final static int STYLE_BEZIER = 3;
+
+    //分段裁剪时不限制的方向使用的范围
+    private final static float CLIP_EXTENT = 1 << 15;
+
+    //无状态的线条样式可共享
+    public final static WaveStyle LINE = new LineStyle(Paint.Cap.BUTT);
+    public final static WaveStyle ROUNDED = new LineStyle(Paint.Cap.ROUND);
+
+    /**
+     * @param style STYLE_LINE、STYLE_ROUNDED、STYLE_ENVELOPE或STYLE_BEZIER
+     * @return 内置样式，Path样式每次返回新实例
+     */
+    public static WaveStyle create(int style) {
+        switch (style) {
+            case STYLE_ROUNDED:
+                return ROUNDED;
+            case STYLE_ENVELOPE:
+                return new EnvelopeStyle(false);
+            case STYLE_BEZIER:
+                return new EnvelopeStyle(true);
+            default:
+                return LINE;
+        }
+    }
+
+    /**
+     * 设置样式时调用一次，配置画笔的线帽、填充方式等
+     * @param paint 波形画笔
+     */
+    public void applyTo(Paint paint) {
+        paint.setStrokeCap(Paint.Cap.BUTT);
+        paint.setStyle(Paint.Style.FILL);
+    }
+
+    /**
+     * @return 是否逐条独立绘制，是时可以使用录制滚动位图只画新增的波形
+     */
+    public boolean isBarStyle() {
+        return false;
+    }
+
+    /**
+     * 画一个声道中的一段波形
+     * @param canvas
+     * @param geometry 已计算好的端点
+     * @param channel 声道
+     * @param from 起始波形下标
+     * @param count 波形个数
+     * @param paint 已设置颜色的画笔
+     */
+    public abstract void draw(Canvas canvas, WaveGeometry geometry, int channel, int from, int count, Paint paint);
+
+    /**
+     * 用同一画笔画出所有声道的全部波形
+     */
+    public void drawAll(Canvas canvas, WaveGeometry geometry, Paint paint) {
+        int lineCount = geometry.getLineCount();
+        if (lineCount == 0)
+            return;
+        for (int c = 0; c < geometry.getChannelCount(); c++) {
+            draw(canvas, geometry, c, 0, lineCount, paint);
+        }
+    }
+
+    /**
+     * 竖线样式，所有声道一次drawLines画出
+     */
+    private static final class LineStyle extends WaveStyle {
+        private final Paint.Cap cap;
+
+        LineStyle(Paint.Cap cap) {
+            this.cap = cap;
+        }
+
+        @Override
+        public void applyTo(Paint paint) {
+            paint.setStrokeCap(cap);
+            paint.setStyle(Paint.Style.STROKE);
+        }
+
+        @Override
+        public boolean isBarStyle() {
+            return true;
+        }
+
+        @Override
+        public void draw(Canvas canvas, WaveGeometry geometry, int channel, int from, int count, Paint paint) {
+            if (count > 0)
+                canvas.drawLines(geometry.getPoints(), (channel * geometry.getLineCount() + from) << 2, count << 2, paint);
+        }
+
+        @Override
+        public void drawAll(Canvas canvas, WaveGeometry geometry, Paint paint) {
+            int lineCount = geometry.getTotalLineCount();
+            if (lineCount > 0)
+                canvas.drawLines(geometry.getPoints(), 0, lineCount << 2, paint);
+        }
+    }
+
+    /**
+     * 填充包络样式，沿波形顶端从左到右、再沿底端从右到左围成闭合区域
+     * 每个声道一个Path，只在端点版本变化时重建，分段绘制时裁剪同一个Path
+     */
+    private static final class EnvelopeStyle extends WaveStyle {
+        //是否用二次贝塞尔曲线平滑
+        private final boolean smooth;
+        private Path[] paths = new Path[0];
+        //Path对应的端点
+        private WaveGeometry builtGeometry;
+        private int builtVersion;
+
+        EnvelopeStyle(boolean smooth) {
+            this.smooth = smooth;
+        }
+
+        @Override
+        public void draw(Canvas canvas, WaveGeometry geometry, int channel, int from, int count, Paint paint) {
+            int lineCount = geometry.getLineCount();
+            if (count <= 0 || lineCount == 0)
+                return;
+            ensurePaths(geometry);
+            if (from == 0 && count >= lineCount) {
+                canvas.drawPath(paths[channel], paint);
+                return;
+            }
+            //分界位于相邻两条波形之间
+            float[] points = geometry.getPoints();
+            int start = channel * lineCount;
+            float halfDivider = lineCount > 1 ? (points[(start + 1) << 2] - points[start << 2]) / 2 : 0;
+            float left = from == 0 ? -CLIP_EXTENT : points[(start + from) << 2] - halfDivider;
+            float right = from + count >= lineCount ? CLIP_EXTENT : points[(start + from + count) << 2] - halfDivider;
+            int saveCount = canvas.save();
+            canvas.clipRect(left, -CLIP_EXTENT, right, CLIP_EXTENT);
+            canvas.drawPath(paths[channel], paint);
+            canvas.restoreToCount(saveCount);
+        }
+
+        @Override
+        public void drawAll(Canvas canvas, WaveGeometry geometry, Paint paint) {
+            if (geometry.getLineCount() == 0)
+                return;
+            ensurePaths(geometry);
+            for (int c = 0; c < geometry.getChannelCount(); c++) {
+                canvas.drawPath(paths[c], paint);
+            }
+        }
+
+        private void ensurePaths(WaveGeometry geometry) {
+            if (geometry == builtGeometry && geometry.getVersion() == builtVersion)
+                return;
+            builtGeometry = geometry;
+            builtVersion = geometry.getVersion();
+            int channelCount = geometry.getChannelCount();
+            if (paths.length < channelCount) {
+                Path[] grown = new Path[channelCount];
+                System.arraycopy(paths, 0, grown, 0, paths.length);
+                for (int c = paths.length; c < channelCount; c++) {
+                    grown[c] = new Path();
+                }
+                paths = grown;
+            }
+            for (int c = 0; c < channelCount; c++) {
+                buildPath(paths[c], geometry.getPoints(), c * geometry.getLineCount(), geometry.getLineCount());
+            }
+        }
+
+        /**
+         * rewind保留Path已分配的内存，重建不产生新对象
+         * @param start 该声道第一条波形的下标
+         */
+        private void buildPath(Path path, float[] points, int start, int count) {
+            path.rewind();
+            int first = start << 2;
+            path.moveTo(points[first], points[first + 1]);
+            //顶端 从左到右
+            for (int i = 1; i < count; i++) {
+                int p = (start + i) << 2;
+                if (smooth) {
+                    int prev = p - 4;
+                    path.quadTo(points[prev], points[prev + 1],
+                            (points[prev] + points[p]) / 2, (points[prev + 1] + points[p + 1]) / 2);
+                } else {
+                    path.lineTo(points[p], points[p + 1]);
+                }
+            }
+            int last = (start + count - 1) << 2;
+            path.lineTo(points[last], points[last + 1]);
+            path.lineTo(points[last + 2], points[last + 3]);
+            //底端 从右到左
+            for (int i = count - 2; i >= 0; i--) {
+                int p = (start + i) << 2;
+                if (smooth) {
+                    int next = p + 4;
+                    path.quadTo(points[next + 2], points[next + 3],
+                            (points[next + 2] + points[p + 2]) / 2, (points[next + 3] + points[p + 3]) / 2);
+                } else {
+                    path.lineTo(points[p + 2], points[p + 3]);
+                }
+            }
+            path.lineTo(points[first + 2], points[first + 3]);
+            path.close();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package me.kaneki.voicewaveview.core;
+
+/**
+ * @author kaneki
+ * @Desctription 振幅显示前的缩放方式
+ */
+public enum AmplitudeScale {
+    //线性 与输入比例一致
+    LINEAR,
+    //按分贝映射到分贝下限至0dB之间，低音量部分更明显
+    DB
+}
@@ -0,0 +1,14 @@
+package me.kaneki.voicewaveview.core;
+
+/**
+ * @author kaneki
+ * @Desctription 多声道波形的排列方式
+ */
+public enum ChannelLayout {
+    //上下镜像 第一个声道向上、第二个声道向下，超过2个声道时按STACKED排列
+    MIRRORED,
+    //按声道等分高度，每个声道一条轨道
+    STACKED,
+    //所有声道叠加在同一中线上，以颜色区分
+    OVERLAID
+}
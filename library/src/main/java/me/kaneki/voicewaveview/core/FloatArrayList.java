@@ -0,0 +1,72 @@
+package me.kaneki.voicewaveview.core;
+
+import java.util.Arrays;
+
+/**
+ * @author kaneki
+ * @Desctription 可增长的float数组，用于保存整段录制的原始波形，避免逐个装箱
+ */
+public class FloatArrayList implements SampleStore {
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private float[] elements;
+    private int size;
+
+    public FloatArrayList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public FloatArrayList(int initialCapacity) {
+        elements = new float[Math.max(initialCapacity, 1)];
+    }
+
+    @Override
+    public void add(float value) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, elements.length + (elements.length >> 1) + 1);
+        }
+        elements[size++] = value;
+    }
+
+    public float get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        return elements[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int read(int from, float[] dst, int offset, int length) {
+        int count = Math.max(Math.min(length, size - from), 0);
+        System.arraycopy(elements, from, dst, offset, count);
+        return count;
+    }
+
+    /**
+     * 清空数据，保留已分配的数组以便下次录制复用
+     */
+    @Override
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * 直接返回内部数组，有效数据为[0, size)
+     * @return
+     */
+    public float[] array() {
+        return elements;
+    }
+
+    public float[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+}
@@ -0,0 +1,98 @@
+package me.kaneki.voicewaveview.core;
+
+/**
+ * @author kaneki
+ * @Desctription 定长float环形缓冲区，写满后覆盖最旧数据，读写均不产生对象分配
+ */
+public class FloatRingBuffer {
+    private float[] buffer;
+    //最旧数据位置
+    private int head;
+    private int size;
+
+    public FloatRingBuffer(int capacity) {
+        buffer = new float[Math.max(capacity, 0)];
+    }
+
+    /**
+     * 加入表尾，缓冲区满时覆盖表头
+     * @param value
+     */
+    public void add(float value) {
+        int capacity = buffer.length;
+        if (capacity == 0)
+            return;
+        if (size < capacity) {
+            buffer[(head + size) % capacity] = value;
+            size++;
+        } else {
+            buffer[head] = value;
+            head = (head + 1) % capacity;
+        }
+    }
+
+    /**
+     * @param index 0为最旧数据
+     * @return
+     */
+    public float get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+        return buffer[(head + index) % buffer.length];
+    }
+
+    /**
+     * 用同一个值填满缓冲区
+     * @param value
+     */
+    public void fill(float value) {
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = value;
+        }
+        head = 0;
+        size = buffer.length;
+    }
+
+    /**
+     * 按从旧到新的顺序拷贝到目标数组
+     * @return 拷贝个数
+     */
+    public int copyTo(float[] dst, int offset) {
+        int capacity = buffer.length;
+        int first = Math.min(size, capacity - head);
+        System.arraycopy(buffer, head, dst, offset, first);
+        System.arraycopy(buffer, 0, dst, offset + first, size - first);
+        return size;
+    }
+
+    /**
+     * 调整容量，仅在容量变化时重新分配，保留最新的数据
+     * @param capacity
+     */
+    public void resize(int capacity) {
+        capacity = Math.max(capacity, 0);
+        if (capacity == buffer.length)
+            return;
+        float[] newBuffer = new float[capacity];
+        int keep = Math.min(size, capacity);
+        for (int i = 0; i < keep; i++) {
+            newBuffer[i] = get(size - keep + i);
+        }
+        buffer = newBuffer;
+        head = 0;
+        size = keep;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+}
@@ -0,0 +1,115 @@
+package me.kaneki.voicewaveview.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author kaneki
+ * @Desctription 单生产者单消费者无锁float队列，生产者(如音频回调线程)写入不加锁也不分配对象
+ * 队列满时丢弃新数据并计数，不会阻塞生产者
+ */
+public class FloatSpscQueue {
+    private final float[] buffer;
+    private final int mask;
+    //下一个读取位置 仅消费者修改
+    private final AtomicLong head = new AtomicLong();
+    //下一个写入位置 仅生产者修改
+    private final AtomicLong tail = new AtomicLong();
+    //生产者缓存的读取位置 减少对head的读取
+    private long cachedHead;
+    //丢弃个数 仅生产者修改
+    private volatile long droppedCount;
+
+    /**
+     * @param capacity 容量，向上取整为2的幂
+     */
+    public FloatSpscQueue(int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        buffer = new float[size];
+        mask = size - 1;
+    }
+
+    /**
+     * 生产者写入单个值
+     * @return 是否写入成功
+     */
+    public boolean offer(float value) {
+        long t = tail.get();
+        if (t - cachedHead >= buffer.length) {
+            cachedHead = head.get();
+            if (t - cachedHead >= buffer.length) {
+                droppedCount++;
+                return false;
+            }
+        }
+        buffer[(int) (t & mask)] = value;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * 生产者批量写入
+     * @return 实际写入个数，空间不足时其余数据被丢弃
+     */
+    public int offer(float[] values, int offset, int count) {
+        return offer(values, offset, count, 1);
+    }
+
+    /**
+     * 生产者按帧批量写入，空间不足时只写入完整的帧，多声道交错数据不会错位
+     * @param frameSize 每帧个数，count应为其整数倍
+     * @return 实际写入个数
+     */
+    public int offer(float[] values, int offset, int count, int frameSize) {
+        long t = tail.get();
+        long free = buffer.length - (t - cachedHead);
+        if (free < count) {
+            cachedHead = head.get();
+            free = buffer.length - (t - cachedHead);
+        }
+        int n = (int) Math.min(count, free);
+        n -= n % frameSize;
+        for (int i = 0; i < n; i++) {
+            buffer[(int) ((t + i) & mask)] = values[offset + i];
+        }
+        tail.lazySet(t + n);
+        if (n < count)
+            droppedCount += count - n;
+        return n;
+    }
+
+    /**
+     * 消费者批量读取
+     * @return 实际读取个数
+     */
+    public int poll(float[] dst, int offset, int max) {
+        long h = head.get();
+        int n = (int) Math.min(tail.get() - h, max);
+        for (int i = 0; i < n; i++) {
+            dst[offset + i] = buffer[(int) ((h + i) & mask)];
+        }
+        head.lazySet(h + n);
+        return n;
+    }
+
+    /**
+     * 消费者丢弃所有未读数据
+     */
+    public void clear() {
+        head.lazySet(tail.get());
+    }
+
+    public int size() {
+        return (int) (tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+}
@@ -0,0 +1,23 @@
+package me.kaneki.voicewaveview.core;
+
+/**
+ * @author kaneki
+ * @Desctription 帧时钟，Android下由Choreographer驱动，测试中可替换为手动推进的实现
+ */
+public interface FrameClock {
+
+    /**
+     * 请求在下一帧回调，每次回调后需重新请求
+     * @param callback
+     */
+    void postFrameCallback(FrameCallback callback);
+
+    void removeFrameCallback(FrameCallback callback);
+
+    interface FrameCallback {
+        /**
+         * @param frameTimeNanos 帧开始时间，与System.nanoTime()同一时基
+         */
+        void doFrame(long frameTimeNanos);
+    }
+}
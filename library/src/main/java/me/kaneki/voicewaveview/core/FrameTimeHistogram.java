@@ -0,0 +1,83 @@
+package me.kaneki.voicewaveview.core;
+
+/**
+ * @author kaneki
+ * @Desctription 固定区间的耗时直方图，记录时不分配对象
+ * 区间上限(ms)：1, 2, 4, 8, 16, 33, 以及超过33ms
+ */
+public class FrameTimeHistogram {
+
+    private static final long[] BUCKET_LIMITS_NANOS = {
+            1000000L, 2000000L, 4000000L, 8000000L, 16000000L, 33000000L
+    };
+
+    private final long[] counts = new long[BUCKET_LIMITS_NANOS.length + 1];
+    private long totalCount;
+    private long totalNanos;
+    private long maxNanos;
+
+    public void record(long nanos) {
+        int bucket = 0;
+        while (bucket < BUCKET_LIMITS_NANOS.length && nanos >= BUCKET_LIMITS_NANOS[bucket]) {
+            bucket++;
+        }
+        counts[bucket]++;
+        totalCount++;
+        totalNanos += nanos;
+        if (nanos > maxNanos)
+            maxNanos = nanos;
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        totalCount = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+
+    /**
+     * @return 区间个数
+     */
+    public int getBucketCount() {
+        return counts.length;
+    }
+
+    /**
+     * @param bucket 区间下标
+     * @return 区间上限(ns)，最后一个区间返回Long.MAX_VALUE
+     */
+    public long getBucketLimitNanos(int bucket) {
+        return bucket < BUCKET_LIMITS_NANOS.length ? BUCKET_LIMITS_NANOS[bucket] : Long.MAX_VALUE;
+    }
+
+    public long getCount(int bucket) {
+        return counts[bucket];
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getAverageNanos() {
+        return totalCount == 0 ? 0 : totalNanos / totalCount;
+    }
+
+    /**
+     * @param limitNanos 帧预算，如16ms
+     * @return 超过帧预算的次数
+     */
+    public long getCountOver(long limitNanos) {
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (i == 0 ? limitNanos <= 0 : BUCKET_LIMITS_NANOS[i - 1] >= limitNanos)
+                count += counts[i];
+        }
+        return count;
+    }
+}
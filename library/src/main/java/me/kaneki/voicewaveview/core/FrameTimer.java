@@ -0,0 +1,68 @@
+package me.kaneki.voicewaveview.core;
+
+/**
+ * @author kaneki
+ * @Desctription 根据帧时间累计有效运行时长，暂停期间不计时
+ */
+public class FrameTimer {
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private long lastFrameTimeNanos = -1;
+    private long elapsedNanos;
+    //计时速度 如2表示两倍速
+    private float speed = 1;
+
+    /**
+     * 清零并重新开始计时，下一帧作为起点
+     */
+    public void reset() {
+        lastFrameTimeNanos = -1;
+        elapsedNanos = 0;
+    }
+
+    /**
+     * 暂停计时，恢复后的第一帧作为新的起点
+     */
+    public void pause() {
+        lastFrameTimeNanos = -1;
+    }
+
+    /**
+     * 每帧调用，累计与上一帧的时间差
+     * @param frameTimeNanos
+     * @return 累计运行时长(ms)
+     */
+    public long update(long frameTimeNanos) {
+        if (lastFrameTimeNanos >= 0 && frameTimeNanos > lastFrameTimeNanos) {
+            long delta = frameTimeNanos - lastFrameTimeNanos;
+            elapsedNanos += speed == 1 ? delta : (long) (delta * (double) speed);
+        }
+        lastFrameTimeNanos = frameTimeNanos;
+        return getElapsedMillis();
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / NANOS_PER_MILLI;
+    }
+
+    /**
+     * 跳转到指定时长，之后从该时长继续累计
+     * @param millis
+     */
+    public void setElapsedMillis(long millis) {
+        elapsedNanos = Math.max(millis, 0) * NANOS_PER_MILLI;
+    }
+
+    public float getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @param speed 计时速度，必须大于0
+     */
+    public void setSpeed(float speed) {
+        if (speed <= 0)
+            throw new IllegalArgumentException("speed must be positive: " + speed);
+        this.speed = speed;
+    }
+}
@@ -0,0 +1,210 @@
+package me.kaneki.voicewaveview.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author kaneki
+ * @Desctription 16位PCM分析，按固定时间窗口计算振幅(0-1)，处理过程不分配对象
+ * 多声道数据按帧交错排列，每个声道分别统计，每个窗口按声道顺序交错输出声道数个振幅
+ */
+public class PcmAnalyzer {
+
+    public enum Mode {
+        /**
+         * 窗口内绝对值峰值
+         */
+        PEAK,
+        /**
+         * 窗口内均方根
+         */
+        RMS,
+        /**
+         * 均方根换算为dBFS后映射到0-1，下限由dbfsFloor决定
+         */
+        DBFS
+    }
+
+    public interface AmplitudeSink {
+        /**
+         * @param values 振幅 0-1，只在回调期间有效
+         */
+        void onAmplitudes(float[] values, int offset, int count);
+    }
+
+    //默认分析窗口 与VoiceWaveView默认的refreshRatio一致，实时录制、WaveDataBuilder和WaveExtractor共用
+    public static final int DEFAULT_WINDOW_MILLIS = 50;
+
+    private static final float FULL_SCALE = 32768f;
+    private static final float DEFAULT_DBFS_FLOOR = -60f;
+    private static final int OUTPUT_BATCH_SIZE = 64;
+
+    private final int sampleRate;
+    private final int channelCount;
+    private final Mode mode;
+    //每个窗口包含的帧数 每帧含各声道一个采样
+    private final int windowFrames;
+    private float dbfsFloor = DEFAULT_DBFS_FLOOR;
+
+    //当前窗口已完整的帧数
+    private int windowFill;
+    //下一个采样所属的声道
+    private int channel;
+    //各声道的窗口统计
+    private final int[] peaks;
+    private final double[] sumSquares;
+    private long processedSamples;
+
+    //长度为声道数的整数倍，回调时总是包含完整的帧
+    private final float[] output;
+    private int outputCount;
+
+    public PcmAnalyzer(int sampleRate, int windowMillis, Mode mode) {
+        this(sampleRate, 1, windowMillis, mode);
+    }
+
+    public PcmAnalyzer(int sampleRate, int channelCount, int windowMillis, Mode mode) {
+        if (sampleRate <= 0 || channelCount <= 0 || windowMillis <= 0)
+            throw new IllegalArgumentException("sampleRate, channelCount and windowMillis must be positive");
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        this.mode = mode;
+        this.windowFrames = Math.max((int) ((long) sampleRate * windowMillis / 1000), 1);
+        peaks = new int[channelCount];
+        sumSquares = new double[channelCount];
+        output = new float[OUTPUT_BATCH_SIZE * channelCount];
+    }
+
+    /**
+     * 分析short数组中的PCM数据，每个完整窗口输出一个振幅
+     */
+    public void process(short[] pcm, int offset, int length, AmplitudeSink sink) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            addSample(pcm[i], sink);
+        }
+        flushOutput(sink);
+    }
+
+    /**
+     * 分析缓冲区中position到limit之间的16位PCM数据，按缓冲区的字节序读取，不修改position
+     */
+    public void process(ByteBuffer pcm, AmplitudeSink sink) {
+        int end = pcm.limit() - 1;
+        for (int i = pcm.position(); i < end; i += 2) {
+            addSample(pcm.getShort(i), sink);
+        }
+        flushOutput(sink);
+    }
+
+    /**
+     * 将未满的窗口作为最后一个振幅输出
+     */
+    public void flush(AmplitudeSink sink) {
+        if (windowFill > 0 || channel > 0)
+            emitWindow(sink);
+        flushOutput(sink);
+    }
+
+    public void reset() {
+        windowFill = 0;
+        channel = 0;
+        clearWindow();
+        processedSamples = 0;
+        outputCount = 0;
+    }
+
+    /**
+     * @return 已处理数据的时长(ms)
+     */
+    public long getProcessedMillis() {
+        return processedSamples / channelCount * 1000 / sampleRate;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public float getDbfsFloor() {
+        return dbfsFloor;
+    }
+
+    /**
+     * @param dbfsFloor DBFS模式下映射为0的分贝值，如-60
+     */
+    public void setDbfsFloor(float dbfsFloor) {
+        this.dbfsFloor = Math.min(dbfsFloor, -1f);
+    }
+
+    private void addSample(short sample, AmplitudeSink sink) {
+        int abs = sample < 0 ? -sample : sample;
+        if (abs > peaks[channel])
+            peaks[channel] = abs;
+        sumSquares[channel] += (double) sample * sample;
+        processedSamples++;
+        if (++channel == channelCount) {
+            channel = 0;
+            if (++windowFill == windowFrames)
+                emitWindow(sink);
+        }
+    }
+
+    /**
+     * 按声道顺序输出当前窗口，flush时最后一帧可能不完整
+     */
+    private void emitWindow(AmplitudeSink sink) {
+        for (int c = 0; c < channelCount; c++) {
+            int count = windowFill + (c < channel ? 1 : 0);
+            output[outputCount++] = toAmplitude(mode, peaks[c], sumSquares[c], count, dbfsFloor);
+        }
+        if (outputCount == output.length)
+            flushOutput(sink);
+        windowFill = 0;
+        channel = 0;
+        clearWindow();
+    }
+
+    private void clearWindow() {
+        for (int c = 0; c < channelCount; c++) {
+            peaks[c] = 0;
+            sumSquares[c] = 0;
+        }
+    }
+
+    /**
+     * 由窗口统计值计算振幅
+     * @param peak 绝对值峰值
+     * @param sumSquares 平方和
+     * @param count 采样数
+     * @return 振幅 0-1
+     */
+    static float toAmplitude(Mode mode, int peak, double sumSquares, int count, float dbfsFloor) {
+        float amplitude;
+        if (mode == Mode.PEAK) {
+            amplitude = peak / FULL_SCALE;
+        } else {
+            float rms = count == 0 ? 0 : (float) Math.sqrt(sumSquares / count) / FULL_SCALE;
+            if (mode == Mode.RMS) {
+                amplitude = rms;
+            } else {
+                float db = rms > 0 ? (float) (20 * Math.log10(rms)) : dbfsFloor;
+                amplitude = Math.max(db - dbfsFloor, 0) / -dbfsFloor;
+            }
+        }
+        return Math.min(amplitude, 1f);
+    }
+
+    private void flushOutput(AmplitudeSink sink) {
+        if (outputCount > 0) {
+            sink.onAmplitudes(output, 0, outputCount);
+            outputCount = 0;
+        }
+    }
+}
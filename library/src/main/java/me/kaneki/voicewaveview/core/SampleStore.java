@@ -0,0 +1,27 @@
+package me.kaneki.voicewaveview.core;
+
+/**
+ * @author kaneki
+ * @Desctription 整段录制原始波形的存储
+ */
+public interface SampleStore {
+
+    void add(float value);
+
+    int size();
+
+    /**
+     * 读取区间内的样本
+     * @param from 起始下标
+     * @param dst 目标数组
+     * @param offset 目标数组偏移
+     * @param length 最多读取个数
+     * @return 实际读取个数
+     */
+    int read(int from, float[] dst, int offset, int length);
+
+    /**
+     * 清空样本，保留已分配的资源以便下次录制复用
+     */
+    void clear();
+}
@@ -0,0 +1,395 @@
+package me.kaneki.voicewaveview.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import me.kaneki.voicewaveview.entity.WaveData;
+
+/**
+ * @author kaneki
+ * @Desctription 分段落盘的样本存储，内存中只保留当前一段，写满的段通过NIO写入缓存文件，
+ * 堆内存占用与录制时长无关，异常退出后可从文件恢复已写入的波形
+ * 未写满的当前段约每秒写入一次(不同步到磁盘)，进程异常退出时最多丢失约1秒，断电时只保证flush之前的数据
+ * 写满的段与备用段交换后交给后台单线程写入，add、flush、clear和close都不会在调用线程上读写磁盘；
+ * 读取已落盘的部分会等待之前的写入完成，应在后台线程调用read或使用readAll
+ * 读写文件出错时不抛出到录制线程，记录第一个错误并通过getError、readAll和recover报告
+ *
+ * 文件格式(大端)：magic(4) 'VWSS' | version(4) | 采样间隔ms(4) | 保留(4) | float样本...
+ */
+public class SpillingSampleStore implements SampleStore {
+
+    private static final int MAGIC = 0x56575353;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    //默认每段样本数 50ms刷新间隔下约12.8秒
+    public static final int DEFAULT_CHUNK_SIZE = 256;
+
+    private final File file;
+    private final int chunkSize;
+    private final int intervalMillis;
+    //每隔多少个样本把未写满的当前段写入文件 约1秒
+    private final int tailWriteSamples;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    //当前段 未写满时也会在flush时写入文件
+    private float[] chunk;
+    //写入完成后归还的段 正常情况下只有一个备用段，磁盘慢时才会新分配
+    private final ConcurrentLinkedQueue<float[]> freeChunks = new ConcurrentLinkedQueue<>();
+    //写文件复用的缓冲区 只在写入线程使用
+    private final ByteBuffer writeBuffer;
+    //读文件复用的缓冲区
+    private final ByteBuffer readBuffer;
+
+    private int size;
+    //已提交写入的完整段个数
+    private int spilledChunks;
+    //第一个读写错误 clear后重置
+    private volatile IOException error;
+
+    //所有实例共用的写入线程，保证同一文件的写入按提交顺序执行
+    private static ExecutorService writer;
+    private static volatile Thread writerThread;
+
+    /**
+     * 读取完成回调，在写入线程调用
+     */
+    public interface ReadCallback {
+        void onRead(float[] samples);
+
+        /**
+         * 读取或之前的写入出错，已落盘的部分不完整
+         */
+        void onError(IOException e);
+    }
+
+    /**
+     * @param file 缓存文件，已存在时会被清空
+     * @param intervalMillis 采样间隔，用于恢复时计算时长
+     */
+    public SpillingSampleStore(File file, int intervalMillis) throws IOException {
+        this(file, intervalMillis, DEFAULT_CHUNK_SIZE);
+    }
+
+    public SpillingSampleStore(File file, int intervalMillis, int chunkSize) throws IOException {
+        this.file = file;
+        this.intervalMillis = intervalMillis;
+        this.chunkSize = Math.max(chunkSize, 1);
+        tailWriteSamples = Math.max(1000 / Math.max(intervalMillis, 1), 1);
+        chunk = new float[this.chunkSize];
+        freeChunks.offer(new float[this.chunkSize]);
+        writeBuffer = ByteBuffer.allocateDirect(this.chunkSize * 4);
+        readBuffer = ByteBuffer.allocateDirect(this.chunkSize * 4);
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+        writeHeader();
+    }
+
+    @Override
+    public void add(float value) {
+        chunk[size % chunkSize] = value;
+        size++;
+        if (size % chunkSize == 0) {
+            //与备用段交换 写入在后台完成后归还
+            writer().execute(new WriteTask(chunk, spilledChunks, chunkSize, false));
+            spilledChunks++;
+            chunk = obtainChunk();
+        } else if (size % tailWriteSamples == 0) {
+            writeTail(false);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int read(int from, float[] dst, int offset, int length) {
+        int count = Math.max(Math.min(length, size - from), 0);
+        if (count > 0 && from / chunkSize < spilledChunks && Thread.currentThread() != writerThread)
+            awaitWrites();
+        int read = 0;
+        while (read < count) {
+            int index = from + read;
+            int chunkIndex = index / chunkSize;
+            int inChunk = index % chunkSize;
+            int n = Math.min(count - read, chunkSize - inChunk);
+            if (chunkIndex >= spilledChunks) {
+                System.arraycopy(chunk, inChunk, dst, offset + read, n);
+            } else {
+                readFromFile(index, dst, offset + read, n);
+            }
+            read += n;
+        }
+        return count;
+    }
+
+    /**
+     * 读取全部样本，内存中的当前段在调用线程复制，已落盘部分在之前的写入完成后由写入线程读取
+     * @param callback 在写入线程回调，可在其中继续做耗时处理
+     */
+    public void readAll(final ReadCallback callback) {
+        final float[] samples = new float[size];
+        final int spilled = Math.min(spilledChunks * chunkSize, size);
+        System.arraycopy(chunk, 0, samples, spilled, size - spilled);
+        writer().execute(new Runnable() {
+            @Override
+            public void run() {
+                int read = 0;
+                while (read < spilled) {
+                    int n = Math.min(spilled - read, chunkSize);
+                    readFromFile(read, samples, read, n);
+                    read += n;
+                }
+                IOException e = error;
+                if (e != null)
+                    callback.onError(e);
+                else
+                    callback.onRead(samples);
+            }
+        });
+    }
+
+    /**
+     * 将未写满的当前段写入文件并同步到磁盘，停止或暂停录制时调用以便异常退出后恢复
+     * 在写入线程完成，不阻塞调用线程
+     */
+    public void flush() {
+        writeTail(true);
+    }
+
+    /**
+     * 复制未写满的当前段交给写入线程，之后写满时整段覆盖
+     * @param force 写入后是否同步到磁盘
+     */
+    private void writeTail(boolean force) {
+        int remain = size % chunkSize;
+        float[] partial = null;
+        if (remain > 0) {
+            partial = obtainChunk();
+            System.arraycopy(chunk, 0, partial, 0, remain);
+        }
+        if (partial != null || force)
+            writer().execute(new WriteTask(partial, spilledChunks, remain, force));
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        spilledChunks = 0;
+        error = null;
+        writer().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    channel.truncate(HEADER_SIZE);
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 在之前提交的写入完成后关闭文件，不会删除
+     */
+    public void close() {
+        writer().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    randomAccessFile.close();
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+        });
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return 读写文件时是否发生过错误，出错的段读取时为0
+     */
+    public boolean isFailed() {
+        return error != null;
+    }
+
+    /**
+     * @return 第一个读写错误，没有出错时为null
+     */
+    public IOException getError() {
+        return error;
+    }
+
+    /**
+     * 从缓存文件恢复波形
+     * @param file 录制时使用的缓存文件
+     * @param bars 生成的波形个数
+     * @return
+     */
+    public static WaveData recover(File file, int bars) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(DEFAULT_CHUNK_SIZE * 4);
+            buffer.limit(HEADER_SIZE);
+            channel.read(buffer, 0);
+            buffer.flip();
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC)
+                throw new IOException("not a sample store file: " + file);
+            if (buffer.getInt() != VERSION)
+                throw new IOException("unsupported sample store version: " + file);
+            int interval = buffer.getInt();
+
+            WaveCompressor compressor = new WaveCompressor(WaveReducer.MEAN);
+            compressor.reset(bars);
+            long position = HEADER_SIZE;
+            long end = channel.size();
+            while (position + 4 <= end) {
+                buffer.clear();
+                int n = channel.read(buffer, position);
+                if (n <= 0)
+                    break;
+                buffer.flip();
+                while (buffer.remaining() >= 4) {
+                    compressor.add(buffer.getFloat());
+                    position += 4;
+                }
+            }
+            return new WaveData(compressor.getResult(), (long) compressor.getSampleCount() * interval);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(intervalMillis).putInt(0).flip();
+        channel.truncate(0);
+        channel.write(header, 0);
+    }
+
+    /**
+     * 等待之前提交的写入全部完成
+     */
+    void awaitWrites() {
+        final CountDownLatch latch = new CountDownLatch(1);
+        writer().execute(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void fail(IOException e) {
+        if (error == null)
+            error = e;
+    }
+
+    private float[] obtainChunk() {
+        float[] free = freeChunks.poll();
+        return free != null ? free : new float[chunkSize];
+    }
+
+    private static synchronized ExecutorService writer() {
+        if (writer == null) {
+            writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "VoiceWaveSpill");
+                    thread.setDaemon(true);
+                    writerThread = thread;
+                    return thread;
+                }
+            });
+        }
+        return writer;
+    }
+
+    /**
+     * 写入一段，完成后归还段数组
+     */
+    private final class WriteTask implements Runnable {
+        private final float[] data;
+        private final int chunkIndex;
+        private final int count;
+        //写入后同步到磁盘
+        private final boolean force;
+
+        WriteTask(float[] data, int chunkIndex, int count, boolean force) {
+            this.data = data;
+            this.chunkIndex = chunkIndex;
+            this.count = count;
+            this.force = force;
+        }
+
+        @Override
+        public void run() {
+            if (data != null) {
+                writeChunk(data, chunkIndex, count);
+                freeChunks.offer(data);
+            }
+            if (force) {
+                try {
+                    channel.force(false);
+                } catch (IOException e) {
+                    fail(e);
+                }
+            }
+        }
+    }
+
+    private void writeChunk(float[] data, int chunkIndex, int count) {
+        writeBuffer.clear();
+        for (int i = 0; i < count; i++) {
+            writeBuffer.putFloat(data[i]);
+        }
+        writeBuffer.flip();
+        long position = HEADER_SIZE + (long) chunkIndex * chunkSize * 4;
+        try {
+            while (writeBuffer.hasRemaining()) {
+                position += channel.write(writeBuffer, position);
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void readFromFile(int index, float[] dst, int offset, int count) {
+        synchronized (readBuffer) {
+            readBuffer.clear();
+            readBuffer.limit(count * 4);
+            long position = HEADER_SIZE + (long) index * 4;
+            try {
+                while (readBuffer.hasRemaining()) {
+                    int n = channel.read(readBuffer, position + readBuffer.position());
+                    if (n < 0)
+                        break;
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+            readBuffer.flip();
+            for (int i = 0; i < count; i++) {
+                dst[offset + i] = readBuffer.remaining() >= 4 ? readBuffer.getFloat() : 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package me.kaneki.voicewaveview.core;
+
+/**
+ * @author kaneki
+ * @Desctription 增量波形压缩器，录制过程中维护maxLines到2*maxLines个区间的摘要，
+ * 区间满时两两合并并将区间长度翻倍，结束时只需O(maxLines)即可得到压缩结果
+ */
+public class WaveCompressor {
+
+    private WaveReducer reducer;
+    //当前录制使用的合并方式，reset时更新
+    private WaveReducer activeReducer;
+    //不足maxLines个样本时是否线性插值，否则重复最近的样本
+    private boolean interpolate;
+
+    private int maxLines;
+    private float[] bucketValues = new float[0];
+    private int[] bucketCounts = new int[0];
+    private int bucketCount;
+    //每个区间包含的样本数
+    private int bucketSize;
+    private int sampleCount;
+
+    public WaveCompressor(WaveReducer reducer) {
+        this.reducer = reducer;
+        this.activeReducer = reducer;
+    }
+
+    /**
+     * 清空摘要，仅在maxLines变大时重新分配
+     * @param maxLines 压缩后的波形个数
+     */
+    public void reset(int maxLines) {
+        this.maxLines = Math.max(maxLines, 0);
+        int capacity = this.maxLines * 2;
+        if (bucketValues.length < capacity) {
+            bucketValues = new float[capacity];
+            bucketCounts = new int[capacity];
+        }
+        activeReducer = reducer;
+        bucketCount = 0;
+        bucketSize = 1;
+        sampleCount = 0;
+    }
+
+    public void add(float value) {
+        if (maxLines == 0)
+            return;
+        if (bucketCount == 0 || bucketCounts[bucketCount - 1] == bucketSize) {
+            if (bucketCount == maxLines * 2)
+                mergeBuckets();
+            bucketValues[bucketCount] = 0;
+            bucketCounts[bucketCount] = 0;
+            bucketCount++;
+        }
+        int last = bucketCount - 1;
+        bucketValues[last] = activeReducer.accumulate(bucketValues[last], value);
+        bucketCounts[last]++;
+        sampleCount++;
+    }
+
+    /**
+     * 生成压缩后的波形
+     * @return 长度为maxLines的数组，没有样本时长度为0
+     */
+    public float[] getResult() {
+        float[] out = new float[sampleCount == 0 ? 0 : maxLines];
+        getResult(out);
+        return out;
+    }
+
+    /**
+     * 将压缩后的波形写入目标数组
+     * @param out 长度不小于maxLines
+     * @return 写入个数
+     */
+    public int getResult(float[] out) {
+        if (sampleCount == 0)
+            return 0;
+        if (bucketCount >= maxLines) {
+            //下采样 每个输出合并相邻的若干区间，余下的样本不会丢弃
+            for (int i = 0; i < maxLines; i++) {
+                int from = (int) ((long) i * bucketCount / maxLines);
+                int to = (int) ((long) (i + 1) * bucketCount / maxLines);
+                float acc = bucketValues[from];
+                int count = bucketCounts[from];
+                for (int j = from + 1; j < to; j++) {
+                    acc = activeReducer.merge(acc, bucketValues[j]);
+                    count += bucketCounts[j];
+                }
+                out[i] = activeReducer.result(acc, count);
+            }
+        } else {
+            //上采样 此时每个区间只有一个样本
+            for (int i = 0; i < maxLines; i++) {
+                if (interpolate && bucketCount > 1 && maxLines > 1) {
+                    float position = (float) i * (bucketCount - 1) / (maxLines - 1);
+                    int index = (int) position;
+                    int next = Math.min(index + 1, bucketCount - 1);
+                    float start = bucketValue(index);
+                    out[i] = start + (bucketValue(next) - start) * (position - index);
+                } else {
+                    out[i] = bucketValue((int) ((long) i * bucketCount / maxLines));
+                }
+            }
+        }
+        return maxLines;
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    public WaveReducer getReducer() {
+        return reducer;
+    }
+
+    /**
+     * 切换合并方式，只影响之后开始的录制
+     * @param reducer
+     */
+    public void setReducer(WaveReducer reducer) {
+        this.reducer = reducer;
+    }
+
+    public boolean isInterpolate() {
+        return interpolate;
+    }
+
+    public void setInterpolate(boolean interpolate) {
+        this.interpolate = interpolate;
+    }
+
+    private float bucketValue(int index) {
+        return activeReducer.result(bucketValues[index], bucketCounts[index]);
+    }
+
+    /**
+     * 区间两两合并，区间长度翻倍
+     */
+    private void mergeBuckets() {
+        int merged = bucketCount / 2;
+        for (int i = 0; i < merged; i++) {
+            bucketValues[i] = activeReducer.merge(bucketValues[2 * i], bucketValues[2 * i + 1]);
+            bucketCounts[i] = bucketCounts[2 * i] + bucketCounts[2 * i + 1];
+        }
+        bucketCount = merged;
+        bucketSize *= 2;
+    }
+}
@@ -0,0 +1,75 @@
+package me.kaneki.voicewaveview.core;
+
+import java.nio.ByteBuffer;
+
+import me.kaneki.voicewaveview.entity.WaveData;
+
+/**
+ * @author kaneki
+ * @Desctription 不依赖View由PCM数据生成WaveData，可在后台线程为已有音频预先计算波形
+ * 多声道PCM按声道分别生成波形，默认窗口与VoiceWaveView.pushPcm和WaveExtractor一致
+ */
+public class WaveDataBuilder implements PcmAnalyzer.AmplitudeSink {
+
+    private final PcmAnalyzer analyzer;
+    //各声道的压缩器
+    private final WaveCompressor[] compressors;
+
+    /**
+     * @param sampleRate 采样率
+     * @param channelCount 声道数
+     * @param bars 生成的波形个数
+     * @param mode 窗口振幅计算方式
+     * @param reducer 窗口合并为波形的方式
+     */
+    public WaveDataBuilder(int sampleRate, int channelCount, int bars, PcmAnalyzer.Mode mode, WaveReducer reducer) {
+        this(sampleRate, channelCount, bars, PcmAnalyzer.DEFAULT_WINDOW_MILLIS, mode, reducer);
+    }
+
+    /**
+     * @param windowMillis 分析窗口(ms)，应与View的refreshRatio一致，同一段PCM实时录制与离线生成的波形才相同
+     */
+    public WaveDataBuilder(int sampleRate, int channelCount, int bars, int windowMillis, PcmAnalyzer.Mode mode, WaveReducer reducer) {
+        analyzer = new PcmAnalyzer(sampleRate, channelCount, windowMillis, mode);
+        compressors = new WaveCompressor[channelCount];
+        for (int c = 0; c < channelCount; c++) {
+            compressors[c] = new WaveCompressor(reducer);
+            compressors[c].reset(bars);
+        }
+    }
+
+    public WaveDataBuilder process(short[] pcm, int offset, int length) {
+        analyzer.process(pcm, offset, length, this);
+        return this;
+    }
+
+    public WaveDataBuilder process(ByteBuffer pcm) {
+        analyzer.process(pcm, this);
+        return this;
+    }
+
+    public PcmAnalyzer getAnalyzer() {
+        return analyzer;
+    }
+
+    /**
+     * 结束输入并生成WaveData，时长由已处理的数据计算
+     * @return
+     */
+    public WaveData build() {
+        analyzer.flush(this);
+        float[][] channels = new float[compressors.length][];
+        for (int c = 0; c < channels.length; c++) {
+            channels[c] = compressors[c].getResult();
+        }
+        return new WaveData(channels, analyzer.getProcessedMillis());
+    }
+
+    @Override
+    public void onAmplitudes(float[] values, int offset, int count) {
+        //振幅按声道交错排列
+        for (int i = 0; i < count; i++) {
+            compressors[i % compressors.length].add(values[offset + i]);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package me.kaneki.voicewaveview.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import me.kaneki.voicewaveview.entity.WaveData;
+
+/**
+ * @author kaneki
+ * @Desctription 按字节预算限制的LRU波形缓存，以消息id等作为key，
+ * 同时缓存按View宽度重采样后的结果，列表滚动回来时不需要重新解码或分配
+ * 放入时复制振幅数组，调用方之后修改自己的WaveData或WaveBean列表不影响缓存
+ */
+public class WaveDataCache {
+
+    //默认内存预算 1MB
+    private static final long DEFAULT_MAX_BYTES = 1024 * 1024;
+    //每个条目最多缓存的重采样宽度个数
+    private static final int MAX_VARIANTS = 2;
+    //条目固定开销估算
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private static WaveDataCache defaultCache;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long maxBytes;
+    private long sizeBytes;
+
+    public WaveDataCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return 所有VoiceWaveView默认共享的缓存
+     */
+    public static synchronized WaveDataCache getDefault() {
+        if (defaultCache == null)
+            defaultCache = new WaveDataCache(DEFAULT_MAX_BYTES);
+        return defaultCache;
+    }
+
+    public synchronized void put(String key, WaveData waveData) {
+        put(key, waveData, true);
+    }
+
+    /**
+     * 解码WaveData二进制格式后放入缓存
+     */
+    public synchronized void put(String key, byte[] bytes) {
+        //解码结果只有缓存持有 不需要复制
+        put(key, WaveData.fromBytes(bytes), false);
+    }
+
+    private void put(String key, WaveData waveData, boolean copy) {
+        float[] amplitudes = waveData.getAmplitudes();
+        if (amplitudes == null)
+            return;
+        Entry entry = new Entry(waveData, copy);
+        Entry previous = entries.put(key, entry);
+        if (previous != null)
+            sizeBytes -= previous.sizeBytes;
+        sizeBytes += entry.sizeBytes;
+        trimToSize(maxBytes);
+    }
+
+    public synchronized boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * @return 缓存的WaveData，未命中时返回null
+     */
+    public synchronized WaveData get(String key) {
+        Entry entry = entries.get(key);
+        return entry == null ? null : entry.waveData;
+    }
+
+    /**
+     * 获取按波形个数重采样后的振幅，同一宽度只计算一次
+     * @return 未命中时返回null，调用方不应修改返回的数组
+     */
+    public synchronized float[] getAmplitudes(String key, int bars) {
+        Entry entry = entries.get(key);
+        if (entry == null)
+            return null;
+        if (bars <= 0 || bars == entry.amplitudes.length)
+            return entry.amplitudes;
+        for (int i = 0; i < MAX_VARIANTS; i++) {
+            if (entry.variantBars[i] == bars)
+                return entry.variants[i];
+        }
+        float[] resampled = entry.waveData.getAmplitudes(bars);
+        //替换较早计算的宽度
+        int slot = entry.nextVariant;
+        entry.nextVariant = (slot + 1) % MAX_VARIANTS;
+        long before = entry.sizeBytes;
+        entry.variants[slot] = resampled;
+        entry.variantBars[slot] = bars;
+        entry.channelVariants[slot] = null;
+        entry.updateSize();
+        sizeBytes += entry.sizeBytes - before;
+        trimToSize(maxBytes);
+        return resampled;
+    }
+
+    /**
+     * 获取按波形个数重采样后的各声道振幅，与getAmplitudes共用宽度槽位，同一宽度只计算一次
+     * @return 单声道或未命中时返回null，调用方不应修改返回的数组
+     */
+    public synchronized float[][] getChannels(String key, int bars) {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.channels == null)
+            return null;
+        if (bars <= 0 || bars == entry.amplitudes.length)
+            return entry.channels;
+        int slot = entry.indexOfVariant(bars);
+        if (slot < 0) {
+            getAmplitudes(key, bars);
+            slot = entry.indexOfVariant(bars);
+        }
+        if (entry.channelVariants[slot] == null) {
+            float[][] channels = new float[entry.channels.length][];
+            for (int c = 0; c < channels.length; c++) {
+                channels[c] = entry.waveData.getChannelAmplitudes(c, bars);
+            }
+            long before = entry.sizeBytes;
+            entry.channelVariants[slot] = channels;
+            entry.updateSize();
+            if (entries.get(key) == entry) {
+                sizeBytes += entry.sizeBytes - before;
+                trimToSize(maxBytes);
+            }
+        }
+        return entry.channelVariants[slot];
+    }
+
+    /**
+     * @return 缓存的时长(ms)，未命中时返回-1
+     */
+    public synchronized long getDuration(String key) {
+        Entry entry = entries.get(key);
+        return entry == null ? -1 : entry.waveData.getDuration();
+    }
+
+    public synchronized void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null)
+            sizeBytes -= entry.sizeBytes;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        sizeBytes = 0;
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        trimToSize(maxBytes);
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public synchronized int getCount() {
+        return entries.size();
+    }
+
+    /**
+     * 淘汰最久未使用的条目直到不超过limit
+     */
+    public synchronized void trimToSize(long limit) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (sizeBytes > limit && iterator.hasNext()) {
+            sizeBytes -= iterator.next().getValue().sizeBytes;
+            iterator.remove();
+        }
+    }
+
+    private static class Entry {
+        final float[] amplitudes;
+        //与调用方的WaveData分离，持有振幅数组的副本
+        final WaveData waveData;
+        final float[][] variants = new float[MAX_VARIANTS][];
+        final int[] variantBars = new int[MAX_VARIANTS];
+        //与variants同一槽位的各声道重采样结果 单声道时不使用
+        final float[][][] channelVariants = new float[MAX_VARIANTS][][];
+        int nextVariant;
+        //各声道振幅 单声道时为null
+        final float[][] channels;
+        //多声道时各声道的float个数
+        final long channelFloats;
+        long sizeBytes;
+
+        /**
+         * @param copy 是否复制振幅数组，来源数组只被缓存持有时可以不复制
+         */
+        Entry(WaveData source, boolean copy) {
+            int channelCount = source.getChannelCount();
+            if (channelCount > 1) {
+                float[][] channels = new float[channelCount][];
+                for (int c = 0; c < channelCount; c++) {
+                    float[] channel = source.getChannelAmplitudes(c);
+                    channels[c] = copy ? channel.clone() : channel;
+                }
+                waveData = new WaveData(channels, source.getDuration());
+                this.channels = channels;
+                channelFloats = (long) channelCount * channels[0].length;
+            } else {
+                float[] amplitudes = source.getAmplitudes();
+                waveData = new WaveData(copy ? amplitudes.clone() : amplitudes, source.getDuration());
+                channels = null;
+                channelFloats = 0;
+            }
+            amplitudes = waveData.getAmplitudes();
+            updateSize();
+        }
+
+        void updateSize() {
+            long floats = amplitudes.length + channelFloats;
+            //重采样时构建的金字塔约占两倍原始数据
+            if (variants[0] != null || variants[1] != null)
+                floats += amplitudes.length * 2L;
+            for (float[] variant : variants) {
+                if (variant != null)
+                    floats += variant.length;
+            }
+            boolean channelPyramids = false;
+            for (float[][] variant : channelVariants) {
+                if (variant != null) {
+                    channelPyramids = true;
+                    floats += (long) variant.length * variant[0].length;
+                }
+            }
+            //各声道重采样时同样构建金字塔
+            if (channelPyramids)
+                floats += channelFloats * 2;
+            sizeBytes = ENTRY_OVERHEAD + floats * 4;
+        }
+
+        int indexOfVariant(int bars) {
+            for (int i = 0; i < MAX_VARIANTS; i++) {
+                if (variantBars[i] == bars && variants[i] != null)
+                    return i;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package me.kaneki.voicewaveview.core;
+
+/**
+ * @author kaneki
+ * @Desctription 振幅动态处理，依次进行分贝缩放、起落包络平滑和峰值保持
+ * 在每个逻辑采样点按采样间隔推进，与帧率无关，只占用与声道数成正比的固定内存
+ */
+public class WaveDynamics {
+
+    //默认分贝下限，低于此值显示为0
+    public static final float DEFAULT_DB_FLOOR = -48f;
+
+    private AmplitudeScale scale = AmplitudeScale.LINEAR;
+    private float dbFloor = DEFAULT_DB_FLOOR;
+    private int attackMillis;
+    private int releaseMillis;
+    private int peakHoldMillis;
+
+    //采样间隔 ms
+    private long stepMillis;
+    //一阶平滑系数 1表示不平滑
+    private float attackCoef = 1;
+    private float releaseCoef = 1;
+
+    //各声道状态
+    private float[] envelopes = new float[0];
+    private float[] peaks = new float[0];
+    private long[] holdRemaining = new long[0];
+
+    /**
+     * @param stepMillis 采样间隔 ms，即refreshRatio
+     */
+    public WaveDynamics(long stepMillis) {
+        this.stepMillis = Math.max(stepMillis, 1);
+    }
+
+    /**
+     * @return 是否需要处理，全部关闭时直接使用原始振幅
+     */
+    public boolean isEnabled() {
+        return scale != AmplitudeScale.LINEAR || attackMillis > 0 || releaseMillis > 0 || peakHoldMillis > 0;
+    }
+
+    public void setScale(AmplitudeScale scale) {
+        this.scale = scale != null ? scale : AmplitudeScale.LINEAR;
+    }
+
+    public AmplitudeScale getScale() {
+        return scale;
+    }
+
+    /**
+     * @param dbFloor 分贝下限，必须小于0
+     */
+    public void setDbFloor(float dbFloor) {
+        if (dbFloor >= 0)
+            throw new IllegalArgumentException("db floor must be negative: " + dbFloor);
+        this.dbFloor = dbFloor;
+    }
+
+    public float getDbFloor() {
+        return dbFloor;
+    }
+
+    /**
+     * @param millis 上升时间常数 ms，0表示立即跟随
+     */
+    public void setAttackTime(int millis) {
+        attackMillis = Math.max(millis, 0);
+        attackCoef = coefficient(attackMillis);
+    }
+
+    public int getAttackTime() {
+        return attackMillis;
+    }
+
+    /**
+     * @param millis 下降时间常数 ms，0表示立即跟随
+     */
+    public void setReleaseTime(int millis) {
+        releaseMillis = Math.max(millis, 0);
+        releaseCoef = coefficient(releaseMillis);
+    }
+
+    public int getReleaseTime() {
+        return releaseMillis;
+    }
+
+    /**
+     * @param millis 峰值保持时间 ms，之后按下降时间常数回落，0表示不保持
+     */
+    public void setPeakHoldTime(int millis) {
+        peakHoldMillis = Math.max(millis, 0);
+    }
+
+    public int getPeakHoldTime() {
+        return peakHoldMillis;
+    }
+
+    /**
+     * 清空状态，声道数变化时重新分配
+     * @param channelCount
+     */
+    public void reset(int channelCount) {
+        if (envelopes.length != channelCount) {
+            envelopes = new float[channelCount];
+            peaks = new float[channelCount];
+            holdRemaining = new long[channelCount];
+            return;
+        }
+        for (int c = 0; c < channelCount; c++) {
+            envelopes[c] = 0;
+            peaks[c] = 0;
+            holdRemaining[c] = 0;
+        }
+    }
+
+    /**
+     * 推进一个采样间隔
+     * @param channel 声道
+     * @param value 原始振幅 0-1
+     * @return 处理后的振幅 0-1
+     */
+    public float process(int channel, float value) {
+        if (scale == AmplitudeScale.DB)
+            value = toDb(value);
+        float envelope = envelopes[channel];
+        float coef = value > envelope ? attackCoef : releaseCoef;
+        envelope = coef == 1 ? value : envelope + (value - envelope) * coef;
+        envelopes[channel] = envelope;
+        if (peakHoldMillis == 0)
+            return envelope;
+        float peak = peaks[channel];
+        if (envelope >= peak) {
+            peak = envelope;
+            holdRemaining[channel] = peakHoldMillis;
+        } else if (holdRemaining[channel] > 0) {
+            holdRemaining[channel] -= stepMillis;
+        } else {
+            peak += (envelope - peak) * releaseCoef;
+        }
+        peaks[channel] = peak;
+        return peak;
+    }
+
+    /**
+     * 振幅映射到分贝下限至0dB之间的比例
+     */
+    private float toDb(float value) {
+        if (value <= 0)
+            return 0;
+        float db = (float) (20 * Math.log10(value));
+        return Math.min(Math.max(1 - db / dbFloor, 0), 1);
+    }
+
+    /**
+     * 一阶低通在一个采样间隔内的系数
+     */
+    private float coefficient(int millis) {
+        if (millis == 0)
+            return 1;
+        return (float) (1 - Math.exp(-(double) stepMillis / millis));
+    }
+}
@@ -0,0 +1,285 @@
+package me.kaneki.voicewaveview.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+
+import me.kaneki.voicewaveview.entity.WaveData;
+
+/**
+ * @author kaneki
+ * @Desctription 从WAV或裸PCM文件离线生成WaveData，通过FileChannel.map内存映射读取，
+ * 一次遍历完成统计，可提交到线程池执行并随时取消
+ * 默认与VoiceWaveView.pushPcm相同：每50ms窗口按DBFS计算振幅，再由WaveCompressor按MEAN合并为波形，
+ * 同一段音频离线生成与实时录制的波形一致；setWindowMillis(0)时改为整个波形区间直接统计
+ * 多声道文件按声道分别生成，与多声道实时录制的WaveRecorder.finishChannels结果一致
+ * 不会应用View的WaveDynamics，只支持16位小端PCM
+ */
+public class WaveExtractor implements Callable<WaveData> {
+
+    //单次映射的最大字节数
+    private static final long MAP_REGION_SIZE = 64L * 1024 * 1024;
+    //检查取消标记的间隔帧数
+    private static final int CANCEL_CHECK_FRAMES = 64 * 1024;
+    private static final float DEFAULT_DBFS_FLOOR = -60f;
+    //与VoiceWaveView默认的refreshRatio一致
+    public static final int DEFAULT_WINDOW_MILLIS = PcmAnalyzer.DEFAULT_WINDOW_MILLIS;
+
+    private final File file;
+    private final boolean isWav;
+    private final int bars;
+    private int sampleRate;
+    private int channelCount;
+    private long duration = -1;
+    private PcmAnalyzer.Mode mode = PcmAnalyzer.Mode.DBFS;
+    private float dbfsFloor = DEFAULT_DBFS_FLOOR;
+    //分析窗口 0表示整个波形区间
+    private int windowMillis = DEFAULT_WINDOW_MILLIS;
+    private WaveReducer reducer = WaveReducer.MEAN;
+
+    private volatile boolean cancelled;
+
+    private WaveExtractor(File file, boolean isWav, int sampleRate, int channelCount, int bars) {
+        this.file = file;
+        this.isWav = isWav;
+        this.sampleRate = sampleRate;
+        this.channelCount = channelCount;
+        this.bars = bars;
+    }
+
+    /**
+     * @param file WAV文件，采样率和声道数从文件头读取
+     * @param bars 生成的波形个数
+     */
+    public static WaveExtractor fromWav(File file, int bars) {
+        return new WaveExtractor(file, true, 0, 0, bars);
+    }
+
+    /**
+     * @param file 16位小端裸PCM文件
+     * @param sampleRate 采样率
+     * @param channelCount 声道数
+     * @param bars 生成的波形个数
+     */
+    public static WaveExtractor fromPcm(File file, int sampleRate, int channelCount, int bars) {
+        if (sampleRate <= 0 || channelCount <= 0)
+            throw new IllegalArgumentException("sampleRate and channelCount must be positive");
+        return new WaveExtractor(file, false, sampleRate, channelCount, bars);
+    }
+
+    /**
+     * @param mode 每个窗口的振幅计算方式，默认DBFS，与pushPcm一致
+     */
+    public WaveExtractor setMode(PcmAnalyzer.Mode mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    /**
+     * @param dbfsFloor DBFS模式下映射为0的分贝值
+     */
+    public WaveExtractor setDbfsFloor(float dbfsFloor) {
+        this.dbfsFloor = Math.min(dbfsFloor, -1f);
+        return this;
+    }
+
+    /**
+     * @param windowMillis 分析窗口(ms)，应与View的refreshRatio一致，默认50；
+     *                     0表示每个波形区间直接按mode统计，不经过合并，与实时录制的波形不同
+     */
+    public WaveExtractor setWindowMillis(int windowMillis) {
+        this.windowMillis = Math.max(windowMillis, 0);
+        return this;
+    }
+
+    /**
+     * @param reducer 窗口合并为波形的方式，默认MEAN，与View的compressReducer一致
+     */
+    public WaveExtractor setReducer(WaveReducer reducer) {
+        this.reducer = reducer;
+        return this;
+    }
+
+    /**
+     * @param duration 指定时长(ms)，不指定时由采样数计算
+     */
+    public WaveExtractor setDuration(long duration) {
+        this.duration = duration;
+        return this;
+    }
+
+    /**
+     * 请求取消，正在执行的call()会抛出CancellationException
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public WaveData call() throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            long dataOffset = 0;
+            long dataLength = channel.size();
+            if (isWav) {
+                long[] dataChunk = readWavHeader(channel);
+                dataOffset = dataChunk[0];
+                dataLength = Math.min(dataChunk[1], channel.size() - dataOffset);
+            }
+            return extract(channel, dataOffset, dataLength);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private WaveData extract(FileChannel channel, long dataOffset, long dataLength) throws IOException {
+        int frameSize = channelCount * 2;
+        long frames = dataLength / frameSize;
+        long waveDuration = duration >= 0 ? duration : frames * 1000 / sampleRate;
+        if (frames == 0 || bars <= 0)
+            return new WaveData(new float[0], waveDuration);
+
+        if (windowMillis > 0)
+            return extractWindows(channel, dataOffset, frames, waveDuration);
+
+        float[][] amplitudes = new float[channelCount][bars];
+        int bar = 0;
+        //下一个波形区间的起始帧
+        long barEnd = barEnd(0, frames);
+        //各声道当前区间的统计
+        int[] peaks = new int[channelCount];
+        double[] sumSquares = new double[channelCount];
+        float[] barAmplitudes = new float[channelCount];
+        int count = 0;
+        int c = 0;
+
+        long frame = 0;
+        long regionSize = MAP_REGION_SIZE - MAP_REGION_SIZE % frameSize;
+        for (long position = 0; position < frames * frameSize; position += regionSize) {
+            long size = Math.min(regionSize, frames * frameSize - position);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + position, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            int limit = (int) size;
+            for (int i = 0; i < limit; i += 2) {
+                short sample = buffer.getShort(i);
+                int abs = sample < 0 ? -sample : sample;
+                if (abs > peaks[c])
+                    peaks[c] = abs;
+                sumSquares[c] += (double) sample * sample;
+                if (++c < channelCount)
+                    continue;
+                c = 0;
+                count++;
+                frame++;
+                if (frame == barEnd) {
+                    for (int ch = 0; ch < channelCount; ch++) {
+                        barAmplitudes[ch] = PcmAnalyzer.toAmplitude(mode, peaks[ch], sumSquares[ch], count, dbfsFloor);
+                        peaks[ch] = 0;
+                        sumSquares[ch] = 0;
+                    }
+                    //帧数少于波形个数时，相同结束帧的波形重复该振幅
+                    while (bar < bars && barEnd(bar, frames) == frame) {
+                        for (int ch = 0; ch < channelCount; ch++) {
+                            amplitudes[ch][bar] = barAmplitudes[ch];
+                        }
+                        bar++;
+                    }
+                    barEnd = barEnd(bar, frames);
+                    count = 0;
+                }
+                if (frame % CANCEL_CHECK_FRAMES == 0)
+                    checkCancelled();
+            }
+        }
+        return new WaveData(amplitudes, waveDuration);
+    }
+
+    /**
+     * 与pushPcm相同由PcmAnalyzer按固定窗口计算各声道振幅，再由各声道的压缩器合并，最后不完整的窗口同样输出
+     */
+    private WaveData extractWindows(FileChannel channel, long dataOffset, long frames, long waveDuration) throws IOException {
+        int frameSize = channelCount * 2;
+        WaveDataBuilder builder = new WaveDataBuilder(sampleRate, channelCount, bars, windowMillis, mode, reducer);
+        builder.getAnalyzer().setDbfsFloor(dbfsFloor);
+        int step = CANCEL_CHECK_FRAMES * frameSize;
+        long regionSize = MAP_REGION_SIZE - MAP_REGION_SIZE % frameSize;
+        for (long position = 0; position < frames * frameSize; position += regionSize) {
+            long size = Math.min(regionSize, frames * frameSize - position);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + position, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            int limit = (int) size;
+            //分批分析 每批之间检查取消
+            for (int from = 0; from < limit; from += step) {
+                buffer.limit(Math.min(from + step, limit));
+                buffer.position(from);
+                builder.process(buffer);
+                checkCancelled();
+            }
+        }
+        WaveData waveData = builder.build();
+        waveData.setDuration(waveDuration);
+        return waveData;
+    }
+
+    /**
+     * @return 第bar个波形区间的结束帧(不包含)，向上取整保证每个区间至少结束于一帧之后
+     */
+    private long barEnd(int bar, long frames) {
+        return ((bar + 1) * frames + bars - 1) / bars;
+    }
+
+    /**
+     * 解析WAV文件头
+     * @return data块的偏移和长度
+     */
+    private long[] readWavHeader(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(fileSize, 12));
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        if (fileSize < 12 || header.getInt(0) != 0x46464952 || header.getInt(8) != 0x45564157)
+            throw new IOException("not a RIFF/WAVE file: " + file);
+        long position = 12;
+        boolean hasFormat = false;
+        while (position + 8 <= fileSize) {
+            MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(fileSize - position, 24));
+            chunk.order(ByteOrder.LITTLE_ENDIAN);
+            int id = chunk.getInt(0);
+            long size = chunk.getInt(4) & 0xffffffffL;
+            if (id == 0x20746d66) {
+                //fmt
+                if (chunk.limit() < 24)
+                    throw new IOException("wav fmt chunk truncated: " + file);
+                int format = chunk.getShort(8) & 0xffff;
+                int bits = chunk.getShort(22) & 0xffff;
+                if ((format != 1 && format != 0xfffe) || bits != 16)
+                    throw new IOException("only 16 bit PCM wav is supported, format: " + format + ", bits: " + bits);
+                channelCount = chunk.getShort(10) & 0xffff;
+                sampleRate = chunk.getInt(12);
+                hasFormat = channelCount > 0 && sampleRate > 0;
+            } else if (id == 0x61746164) {
+                //data
+                if (!hasFormat)
+                    throw new IOException("wav data chunk before fmt chunk: " + file);
+                return new long[]{position + 8, size};
+            }
+            //块长度按2字节对齐
+            position += 8 + size + (size & 1);
+        }
+        throw new IOException("wav data chunk not found: " + file);
+    }
+
+    private void checkCancelled() {
+        if (cancelled || Thread.currentThread().isInterrupted())
+            throw new CancellationException("wave extraction cancelled: " + file);
+    }
+}
@@ -0,0 +1,125 @@
+package me.kaneki.voicewaveview.core;
+
+/**
+ * @author kaneki
+ * @Desctription 录制和播放的逐帧推进，VoiceWaveView、VoiceWaveTextureView和测试共用
+ * 只组合FrameTimer、WaveRecorder和WaveGeometry，不依赖帧时钟和绘制，每帧不分配对象
+ */
+public class WaveFrameDriver {
+
+    //外部播放位置超过该时长不再前进时视为播放已停止 ms
+    public static final long DEFAULT_STALL_MILLIS = 1000;
+
+    private final FrameTimer frameTimer;
+    private final WaveRecorder recorder;
+    private final WaveGeometry geometry;
+
+    //最近一帧的播放时长 ms
+    private long playMillis;
+    //最近一帧的播放位置 即已播放的波形个数
+    private int playPosition;
+    private long stallMillis = DEFAULT_STALL_MILLIS;
+    //外部播放位置最近一次变化时的值和帧时间，-1表示尚未读取
+    private long lastExternalMillis = -1;
+    private long lastAdvanceNanos;
+
+    public WaveFrameDriver(FrameTimer frameTimer, WaveRecorder recorder, WaveGeometry geometry) {
+        this.frameTimer = frameTimer;
+        this.recorder = recorder;
+        this.geometry = geometry;
+    }
+
+    /**
+     * 录制帧：按固定逻辑间隔补齐本帧应采样的个数，有新增时标记端点失效
+     * 是否到达最大时长由调用方通过WaveRecorder.isFinished判断
+     * @param frameTimeNanos 帧时间
+     * @return 本帧新增的采样个数
+     */
+    public int recordFrame(long frameTimeNanos) {
+        int added = recorder.advance(frameTimer.update(frameTimeNanos));
+        if (added > 0)
+            geometry.invalidate();
+        return added;
+    }
+
+    /**
+     * 按当前可见波形计算端点，只在数据变化后重新计算
+     */
+    public void buildRecordGeometry() {
+        if (!geometry.isDirty())
+            return;
+        if (recorder.getChannelCount() > 1)
+            geometry.build(recorder.getVisibleWaves());
+        else
+            geometry.build(recorder.getVisibleWave());
+    }
+
+    /**
+     * 播放帧：按帧计时推进并换算波形位置
+     * @param frameTimeNanos 帧时间
+     * @param size 波形个数
+     * @param duration 总时长 ms
+     * @return 是否需要继续下一帧
+     */
+    public boolean playFrame(long frameTimeNanos, int size, long duration) {
+        return playFrameAt(frameTimer.update(frameTimeNanos), size, duration);
+    }
+
+    /**
+     * 播放帧：使用外部提供的播放位置，如MediaPlayer的当前位置
+     * @param millis 播放位置 ms
+     * @param size 波形个数
+     * @param duration 总时长 ms
+     * @return 是否需要继续下一帧
+     */
+    public boolean playFrameAt(long millis, int size, long duration) {
+        playMillis = millis;
+        playPosition = WavePlayback.positionAt(millis, size, duration);
+        return !WavePlayback.isFinished(millis, duration);
+    }
+
+    /**
+     * 播放帧：使用外部播放位置，位置到达总时长或超过stallMillis未前进时结束
+     * 播放器暂停、出错或实际时长略短于波形时长时不会一直请求帧回调
+     * @param frameTimeNanos 帧时间
+     * @param millis 外部播放位置 ms
+     * @param size 波形个数
+     * @param duration 总时长 ms
+     * @return 是否需要继续下一帧
+     */
+    public boolean playFrameAt(long frameTimeNanos, long millis, int size, long duration) {
+        boolean playing = playFrameAt(millis, size, duration);
+        if (millis != lastExternalMillis) {
+            lastExternalMillis = millis;
+            lastAdvanceNanos = frameTimeNanos;
+            return playing;
+        }
+        return playing && frameTimeNanos - lastAdvanceNanos < stallMillis * 1000000L;
+    }
+
+    /**
+     * 开始或恢复播放时调用，重新开始判断外部播放位置是否停止前进
+     */
+    public void resetExternalPosition() {
+        lastExternalMillis = -1;
+    }
+
+    /**
+     * @param stallMillis 外部播放位置不前进多久后结束播放 ms
+     */
+    public void setStallMillis(long stallMillis) {
+        this.stallMillis = Math.max(stallMillis, 1);
+    }
+
+    public long getStallMillis() {
+        return stallMillis;
+    }
+
+    public long getPlayMillis() {
+        return playMillis;
+    }
+
+    public int getPlayPosition() {
+        return playPosition;
+    }
+}
@@ -0,0 +1,213 @@
+package me.kaneki.voicewaveview.core;
+
+/**
+ * @author kaneki
+ * @Desctription 波形线段端点预计算，结果可直接交给Canvas.drawLines批量绘制
+ * 每条波形占4个float(x0, y0, x1, y1)，波形从右侧对齐排列
+ * 多声道时各声道的端点依次排列在同一个数组中，可以一次drawLines画出所有声道
+ */
+public class WaveGeometry {
+    private float[] points = new float[0];
+    //每个声道的波形个数
+    private int lineCount;
+    //上次计算的声道数
+    private int channelCount = 1;
+    private ChannelLayout channelLayout = ChannelLayout.MIRRORED;
+
+    private float width;
+    private float centerY;
+    private float dividerWidth;
+    private float maxWaveHeight;
+    private float minWaveHeight;
+
+    //数据或尺寸变化后需要重新计算
+    private volatile boolean dirty = true;
+    //每次重新计算后递增，依赖端点的Path等据此判断是否需要重建
+    private int version;
+
+    /**
+     * 设置绘制区域参数，参数变化时标记需要重新计算
+     */
+    public void setBounds(float width, float centerY, float dividerWidth, float maxWaveHeight, float minWaveHeight) {
+        if (this.width != width || this.centerY != centerY || this.dividerWidth != dividerWidth
+                || this.maxWaveHeight != maxWaveHeight || this.minWaveHeight != minWaveHeight) {
+            this.width = width;
+            this.centerY = centerY;
+            this.dividerWidth = dividerWidth;
+            this.maxWaveHeight = maxWaveHeight;
+            this.minWaveHeight = minWaveHeight;
+            dirty = true;
+        }
+    }
+
+    /**
+     * 设置多声道排列方式
+     * @param layout
+     */
+    public void setChannelLayout(ChannelLayout layout) {
+        if (channelLayout != layout) {
+            channelLayout = layout;
+            dirty = true;
+        }
+    }
+
+    public ChannelLayout getChannelLayout() {
+        return channelLayout;
+    }
+
+    /**
+     * 标记数据已变化，可在任意线程调用
+     */
+    public void invalidate() {
+        dirty = true;
+    }
+
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * @return 端点版本号，每次build或clear后变化
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * 根据波形数组计算端点
+     * @param wave 振幅比例数组
+     * @param count 有效个数
+     */
+    public void build(float[] wave, int count) {
+        dirty = false;
+        version++;
+        channelCount = 1;
+        ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            setLine(0, i, count, wave[i]);
+        }
+        lineCount = count;
+    }
+
+    /**
+     * 根据各声道波形数组计算端点，各声道长度必须一致
+     * @param waves 各声道振幅比例数组
+     */
+    public void build(float[][] waves) {
+        dirty = false;
+        version++;
+        channelCount = waves.length;
+        int count = waves[0].length;
+        ensureCapacity(count * channelCount);
+        for (int c = 0; c < channelCount; c++) {
+            float[] wave = waves[c];
+            for (int i = 0; i < count; i++) {
+                setLine(c, i, count, wave[i]);
+            }
+        }
+        lineCount = count;
+    }
+
+    /**
+     * 根据各声道环形缓冲区计算端点，各声道容量必须一致
+     * @param waveBuffers
+     */
+    public void build(FloatRingBuffer[] waveBuffers) {
+        dirty = false;
+        version++;
+        channelCount = waveBuffers.length;
+        int count = waveBuffers[0].size();
+        ensureCapacity(count * channelCount);
+        for (int c = 0; c < channelCount; c++) {
+            FloatRingBuffer waveBuffer = waveBuffers[c];
+            for (int i = 0; i < count; i++) {
+                setLine(c, i, count, waveBuffer.get(i));
+            }
+        }
+        lineCount = count;
+    }
+
+    /**
+     * 根据环形缓冲区计算端点，按从旧到新顺序排列
+     * @param waveBuffer
+     */
+    public void build(FloatRingBuffer waveBuffer) {
+        dirty = false;
+        version++;
+        int count = waveBuffer.size();
+        channelCount = 1;
+        ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            setLine(0, i, count, waveBuffer.get(i));
+        }
+        lineCount = count;
+    }
+
+    public void clear() {
+        lineCount = 0;
+        channelCount = 1;
+        dirty = false;
+        version++;
+    }
+
+    /**
+     * @return 端点数组，有效长度为getLineCount() * 4
+     */
+    public float[] getPoints() {
+        return points;
+    }
+
+    /**
+     * @return 每个声道的波形个数，第c个声道的端点从(c * getLineCount()) << 2开始
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    /**
+     * @return 所有声道的波形个数
+     */
+    public int getTotalLineCount() {
+        return lineCount * channelCount;
+    }
+
+    private void setLine(int channel, int index, int count, float amplitude) {
+        float x = width - (count - index) * dividerWidth;
+        float center = centerY;
+        float top;
+        float bottom;
+        //超过2个声道时镜像会重叠，退回分轨排列
+        if (channelCount == 2 && channelLayout == ChannelLayout.MIRRORED) {
+            //第一个声道在中线上方，第二个声道在下方
+            float offset = Math.max(amplitude * maxWaveHeight, minWaveHeight);
+            top = (channel & 1) == 0 ? center - offset : center;
+            bottom = (channel & 1) == 0 ? center : center + offset;
+        } else if (channelCount > 1 && channelLayout != ChannelLayout.OVERLAID) {
+            //每个声道占等分高度的一条轨道
+            float laneHeight = centerY * 2 / channelCount;
+            center = laneHeight * (channel + 0.5f);
+            float offset = Math.max(amplitude * maxWaveHeight / channelCount, minWaveHeight);
+            top = center - offset;
+            bottom = center + offset;
+        } else {
+            float offset = Math.max(amplitude * maxWaveHeight, minWaveHeight);
+            top = center - offset;
+            bottom = center + offset;
+        }
+        int p = (channel * count + index) << 2;
+        points[p] = x;
+        points[p + 1] = top;
+        points[p + 2] = x;
+        points[p + 3] = bottom;
+    }
+
+    private void ensureCapacity(int count) {
+        if (points.length < count << 2) {
+            points = new float[count << 2];
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package me.kaneki.voicewaveview.core;
+
+/**
+ * @author kaneki
+ * @Desctription 播放时间与波形位置的换算，VoiceWaveView和VoiceWaveTextureView共用
+ */
+public final class WavePlayback {
+
+    private WavePlayback() {
+    }
+
+    /**
+     * 播放时间换算为波形位置 O(1)
+     * @param millis 播放位置(ms)
+     * @param size 波形个数
+     * @param duration 总时长(ms)
+     * @return 已播放的波形个数，播放结束或时长无效时为size
+     */
+    public static int positionAt(long millis, int size, long duration) {
+        if (duration <= 0 || millis >= duration)
+            return size;
+        return (int) (Math.max(millis, 0) * size / duration);
+    }
+
+    /**
+     * 波形位置换算为播放时间
+     * @param position 波形位置
+     * @param size 波形个数
+     * @param duration 总时长(ms)
+     * @return 该位置开始的时间(ms)
+     */
+    public static long millisAt(int position, int size, long duration) {
+        if (size <= 0)
+            return 0;
+        return Math.max(Math.min(position, size), 0) * duration / size;
+    }
+
+    /**
+     * @return 是否已播放到结尾
+     */
+    public static boolean isFinished(long millis, long duration) {
+        return duration <= 0 || millis >= duration;
+    }
+}
@@ -0,0 +1,182 @@
+package me.kaneki.voicewaveview.core;
+
+/**
+ * @author kaneki
+ * @Desctription 多分辨率波形金字塔，第k层每个元素保存2^k个原始样本的最小值和最大值，
+ * 任意宽度的View都可以选取合适的层级在O(宽度)时间内重采样，不需要重新扫描原始样本
+ */
+public class WavePyramid {
+    private final float[] samples;
+    private final int sampleCount;
+    //mins[k] maxs[k]对应第k+1层，第0层即原始样本
+    private final float[][] mins;
+    private final float[][] maxs;
+
+    public WavePyramid(float[] samples) {
+        this(samples, samples.length);
+    }
+
+    public WavePyramid(float[] samples, int count) {
+        this.samples = samples;
+        this.sampleCount = count;
+        int levels = 0;
+        while ((1 << (levels + 1)) < count) {
+            levels++;
+        }
+        mins = new float[levels][];
+        maxs = new float[levels][];
+        int size = count;
+        for (int k = 0; k < levels; k++) {
+            int next = (size + 1) / 2;
+            float[] min = new float[next];
+            float[] max = new float[next];
+            for (int i = 0; i < next; i++) {
+                int a = 2 * i;
+                int b = Math.min(a + 1, size - 1);
+                if (k == 0) {
+                    min[i] = Math.min(samples[a], samples[b]);
+                    max[i] = Math.max(samples[a], samples[b]);
+                } else {
+                    min[i] = Math.min(mins[k - 1][a], mins[k - 1][b]);
+                    max[i] = Math.max(maxs[k - 1][a], maxs[k - 1][b]);
+                }
+            }
+            mins[k] = min;
+            maxs[k] = max;
+            size = next;
+        }
+    }
+
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return 层级个数，包括原始样本层
+     */
+    public int getLevelCount() {
+        return mins.length + 1;
+    }
+
+    /**
+     * @param level 层级
+     * @return 该层元素个数
+     */
+    public int getLevelSize(int level) {
+        return level == 0 ? sampleCount : mins[level - 1].length;
+    }
+
+    public float getMin(int level, int index) {
+        return level == 0 ? samples[index] : mins[level - 1][index];
+    }
+
+    public float getMax(int level, int index) {
+        return level == 0 ? samples[index] : maxs[level - 1][index];
+    }
+
+    /**
+     * 选取每个元素覆盖样本数不超过samplesPerBar的最粗层级
+     * @param bars 目标波形个数
+     * @return
+     */
+    public int selectLevel(int bars) {
+        if (bars <= 0 || bars >= sampleCount)
+            return 0;
+        int level = 0;
+        while (level + 1 < getLevelCount() && (long) bars << (level + 1) <= sampleCount) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * 重采样为bars个波形，每个波形取对应区间的峰值
+     * @param bars 目标波形个数
+     * @param outMax 区间最大值，长度不小于bars
+     * @param outMin 区间最小值，可为null
+     */
+    public void resample(int bars, float[] outMax, float[] outMin) {
+        resample(0, sampleCount, bars, outMax, outMin);
+    }
+
+    /**
+     * 将样本区间[from, to)重采样为bars个波形
+     */
+    public void resample(int from, int to, int bars, float[] outMax, float[] outMin) {
+        int span = to - from;
+        if (span <= 0 || bars <= 0)
+            return;
+        if (bars >= span) {
+            //样本不足时重复相邻样本
+            for (int i = 0; i < bars; i++) {
+                int index = from + (int) ((long) i * span / bars);
+                outMax[i] = samples[index];
+                if (outMin != null)
+                    outMin[i] = samples[index];
+            }
+            return;
+        }
+        int level = selectLevel((int) Math.min((long) bars * sampleCount / span, Integer.MAX_VALUE));
+        int levelSize = getLevelSize(level);
+        for (int i = 0; i < bars; i++) {
+            int start = from + (int) ((long) i * span / bars);
+            int end = from + (int) ((long) (i + 1) * span / bars);
+            int first = start >> level;
+            int last = Math.min((end - 1) >> level, levelSize - 1);
+            float max = getMax(level, first);
+            float min = getMin(level, first);
+            for (int j = first + 1; j <= last; j++) {
+                max = Math.max(max, getMax(level, j));
+                min = Math.min(min, getMin(level, j));
+            }
+            outMax[i] = max;
+            if (outMin != null)
+                outMin[i] = min;
+        }
+    }
+
+    /**
+     * 从第start个样本开始，每个波形覆盖samplesPerBar个样本，区间边界固定且结果精确，适合滚动时逐帧采样
+     * @param start 起始样本位置
+     * @param samplesPerBar 每个波形覆盖的样本数，不小于1
+     * @param bars 目标波形个数
+     * @param outMax 区间最大值，长度不小于bars
+     * @param outMin 区间最小值，可为null
+     */
+    public void resample(double start, double samplesPerBar, int bars, float[] outMax, float[] outMin) {
+        if (sampleCount == 0)
+            return;
+        for (int i = 0; i < bars; i++) {
+            int from = Math.min((int) (start + i * samplesPerBar), sampleCount - 1);
+            int to = Math.min(Math.max(from + 1, (int) (start + (i + 1) * samplesPerBar)), sampleCount);
+            //自底向上只取区间两端不成对的元素 O(log(samplesPerBar))
+            float max = samples[from];
+            float min = samples[from];
+            int level = 0;
+            int lo = from;
+            int hi = to;
+            while (lo < hi && level + 1 < getLevelCount()) {
+                if ((lo & 1) != 0) {
+                    max = Math.max(max, getMax(level, lo));
+                    min = Math.min(min, getMin(level, lo));
+                    lo++;
+                }
+                if ((hi & 1) != 0) {
+                    hi--;
+                    max = Math.max(max, getMax(level, hi));
+                    min = Math.min(min, getMin(level, hi));
+                }
+                lo >>= 1;
+                hi >>= 1;
+                level++;
+            }
+            for (int j = lo; j < hi; j++) {
+                max = Math.max(max, getMax(level, j));
+                min = Math.min(min, getMin(level, j));
+            }
+            outMax[i] = max;
+            if (outMin != null)
+                outMin[i] = min;
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package me.kaneki.voicewaveview.core;
+
+/**
+ * @author kaneki
+ * @Desctription 录制波形模型，不依赖Android，供各个View共用
+ * 输入线程写入振幅队列，帧线程按固定逻辑间隔采样，同时维护可见波形、压缩摘要和整段原始波形
+ * 多声道时队列中按声道交错排列，每帧一次读取所有声道，整段原始波形保存各声道的峰值
+ */
+public class WaveRecorder {
+    //振幅输入队列容量
+    private static final int AMPLITUDE_QUEUE_CAPACITY = 4096;
+    //每帧从队列读取振幅的批大小
+    private static final int AMPLITUDE_DRAIN_SIZE = 256;
+
+    //振幅输入队列 输入线程写入，帧线程读取
+    private final FloatSpscQueue amplitudeQueue;
+    //帧线程读取队列用的缓冲区
+    private final float[] drainBuffer;
+    //输入线程写入单个振幅时组成一帧用的缓冲区
+    private float[] offerFrame;
+    //offerShared多线程写入时串行
+    private final Object sharedOfferLock = new Object();
+    //声道数
+    private int channelCount = 1;
+    //各声道当前可见波形 定长环形缓冲区
+    private FloatRingBuffer[] visibleWaves;
+    //各声道录制过程中增量维护的压缩摘要
+    private WaveCompressor[] compressors;
+    private WaveReducer reducer;
+    private boolean interpolate;
+    //振幅动态处理 未启用时直接使用原始振幅
+    private final WaveDynamics dynamics;
+    private int visibleSize;
+    //内存存储 未设置其他存储时使用
+    private final FloatArrayList memoryStore;
+    //整段录制的原始波形
+    private SampleStore sampleStore;
+
+    //采样间隔
+    private final long refreshRatio;
+    //最大录音时间 秒，0表示不限制
+    private int maxDuration;
+    //录制时长
+    private long duration;
+    //各声道上次采样后到达的振幅峰值
+    private float[] pendingPeaks;
+    private boolean hasPendingPeak;
+    //各声道当前波形高度(相对最大高度的比例) 没有新输入时保持上次的值
+    private float[] waveHeights;
+    //达到最大录音时间
+    private boolean finished;
+    //从队列读取的振幅个数
+    private long samplesIngested;
+    //开始录制时队列已丢弃的个数 丢弃计数由输入线程累加，不能在帧线程清零
+    private long droppedAtStart;
+
+    /**
+     * @param refreshRatio 采样间隔 ms
+     * @param maxDuration 最大录音时间 秒，0表示不限制
+     * @param reducer 压缩合并方式
+     */
+    public WaveRecorder(long refreshRatio, int maxDuration, WaveReducer reducer) {
+        this.refreshRatio = Math.max(refreshRatio, 1);
+        this.maxDuration = Math.max(maxDuration, 0);
+        amplitudeQueue = new FloatSpscQueue(AMPLITUDE_QUEUE_CAPACITY);
+        drainBuffer = new float[AMPLITUDE_DRAIN_SIZE];
+        this.reducer = reducer;
+        dynamics = new WaveDynamics(this.refreshRatio);
+        allocateChannels();
+        memoryStore = new FloatArrayList((int) (this.maxDuration * 1000 / this.refreshRatio));
+        sampleStore = memoryStore;
+    }
+
+    /**
+     * 写入一个振幅，只能在输入线程调用
+     * @param value 振幅 0-1
+     */
+    public void offer(float value) {
+        if (channelCount == 1) {
+            amplitudeQueue.offer(value);
+            return;
+        }
+        //多声道时写入所有声道
+        float[] frame = offerFrame;
+        for (int c = 0; c < frame.length; c++) {
+            frame[c] = value;
+        }
+        amplitudeQueue.offer(frame, 0, frame.length, frame.length);
+    }
+
+    /**
+     * 写入一个振幅，可在多个线程同时调用，写入之间加锁串行
+     * 不能与offer同时在其他线程调用，高频输入应使用单线程的offer
+     * @param value 振幅 0-1
+     */
+    public void offerShared(float value) {
+        synchronized (sharedOfferLock) {
+            offer(value);
+        }
+    }
+
+    /**
+     * 批量写入振幅，只能在输入线程调用，队列满时多出的振幅被丢弃
+     * 多声道时按声道交错排列，不完整的帧被忽略
+     */
+    public void offer(float[] values, int offset, int count) {
+        if (channelCount == 1) {
+            amplitudeQueue.offer(values, offset, count);
+            return;
+        }
+        amplitudeQueue.offer(values, offset, count - count % channelCount, channelCount);
+    }
+
+    /**
+     * 设置声道数，只能在录制开始前调用
+     * @param channelCount
+     */
+    public void setChannelCount(int channelCount) {
+        if (channelCount < 1)
+            throw new IllegalArgumentException("channel count must be positive: " + channelCount);
+        if (this.channelCount == channelCount)
+            return;
+        this.channelCount = channelCount;
+        allocateChannels();
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    /**
+     * 设置可见波形个数，仅在容量变化时重新分配
+     * @param lines
+     */
+    public void setVisibleSize(int lines) {
+        visibleSize = lines;
+        for (FloatRingBuffer visibleWave : visibleWaves) {
+            visibleWave.resize(lines);
+        }
+    }
+
+    /**
+     * 设置压缩合并方式，下次开始录制时生效
+     * @param reducer
+     */
+    public void setReducer(WaveReducer reducer) {
+        this.reducer = reducer;
+        for (WaveCompressor compressor : compressors) {
+            compressor.setReducer(reducer);
+        }
+    }
+
+    /**
+     * 录制样本少于波形个数时是否线性插值补齐
+     * @param interpolate
+     */
+    public void setInterpolate(boolean interpolate) {
+        this.interpolate = interpolate;
+        for (WaveCompressor compressor : compressors) {
+            compressor.setInterpolate(interpolate);
+        }
+    }
+
+    public boolean isInterpolate() {
+        return interpolate;
+    }
+
+    /**
+     * @return 振幅动态处理，参数可随时修改，每个采样点生效
+     */
+    public WaveDynamics getDynamics() {
+        return dynamics;
+    }
+
+    /**
+     * 开始新的录制，清空之前的数据
+     * @param lines 压缩结果的波形个数
+     */
+    public void start(int lines) {
+        duration = 0;
+        hasPendingPeak = false;
+        finished = false;
+        samplesIngested = 0;
+        amplitudeQueue.clear();
+        droppedAtStart = amplitudeQueue.getDroppedCount();
+        sampleStore.clear();
+        dynamics.reset(channelCount);
+        for (int c = 0; c < channelCount; c++) {
+            waveHeights[c] = 0;
+            compressors[c].reset(lines);
+            visibleWaves[c].fill(0);
+        }
+    }
+
+    /**
+     * 按录制有效时长补齐应采样的个数，在帧线程调用
+     * @param elapsedMillis 录制有效时长
+     * @return 本次新增的样本个数
+     */
+    public int advance(long elapsedMillis) {
+        long samples = elapsedMillis / refreshRatio;
+        drainAmplitudes();
+        int added = 0;
+        while (!finished && sampleStore.size() < samples) {
+            duration += refreshRatio;
+            //录制最大时间
+            if (maxDuration > 0 && duration / 1000 >= maxDuration) {
+                finished = true;
+                break;
+            }
+            if (hasPendingPeak) {
+                System.arraycopy(pendingPeaks, 0, waveHeights, 0, channelCount);
+                hasPendingPeak = false;
+            }
+            float mix = 0;
+            boolean shaped = dynamics.isEnabled();
+            for (int c = 0; c < channelCount; c++) {
+                float wave = shaped ? dynamics.process(c, waveHeights[c]) : waveHeights[c];
+                compressors[c].add(wave);
+                //加入表尾 超过能显示的最大数时覆盖表头
+                visibleWaves[c].add(wave);
+                mix = Math.max(mix, wave);
+            }
+            sampleStore.add(mix);
+            added++;
+        }
+        return added;
+    }
+
+    /**
+     * @return 是否已达到最大录音时间
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * 结束录制，生成压缩波形 O(波形个数)
+     * @return
+     */
+    public float[] finish() {
+        return finishChannels()[0];
+    }
+
+    /**
+     * 结束录制，生成各声道的压缩波形
+     * @return
+     */
+    public float[][] finishChannels() {
+        if (sampleStore instanceof SpillingSampleStore)
+            //未写满的段也写入文件 便于异常退出后恢复
+            ((SpillingSampleStore) sampleStore).flush();
+        float[][] result = new float[channelCount][];
+        for (int c = 0; c < channelCount; c++) {
+            visibleWaves[c].clear();
+            result[c] = compressors[c].getResult();
+        }
+        return result;
+    }
+
+    /**
+     * 释放录制数据
+     */
+    public void clear() {
+        sampleStore.clear();
+        for (FloatRingBuffer visibleWave : visibleWaves) {
+            visibleWave.clear();
+        }
+    }
+
+    /**
+     * 替换整段原始波形的存储
+     * @param store 为null时使用内存存储
+     */
+    public void setSampleStore(SampleStore store) {
+        sampleStore = store != null ? store : memoryStore;
+    }
+
+    public SampleStore getSampleStore() {
+        return sampleStore;
+    }
+
+    public FloatRingBuffer getVisibleWave() {
+        return visibleWaves[0];
+    }
+
+    /**
+     * @return 各声道的可见波形
+     */
+    public FloatRingBuffer[] getVisibleWaves() {
+        return visibleWaves;
+    }
+
+    public long getRefreshRatio() {
+        return refreshRatio;
+    }
+
+    public void setMaxDuration(int seconds) {
+        maxDuration = Math.max(seconds, 0);
+    }
+
+    public int getMaxDuration() {
+        return maxDuration;
+    }
+
+    public long getDuration() {
+        return duration;
+    }
+
+    public long getSamplesIngested() {
+        return samplesIngested;
+    }
+
+    /**
+     * @return 本次录制因队列已满被丢弃的振幅个数，与getSamplesIngested统计同一区间
+     */
+    public long getDroppedCount() {
+        return amplitudeQueue.getDroppedCount() - droppedAtStart;
+    }
+
+    /**
+     * 读取输入队列，累计本次采样前的振幅峰值
+     */
+    private void drainAmplitudes() {
+        int count;
+        int max = drainBuffer.length - drainBuffer.length % channelCount;
+        while ((count = amplitudeQueue.poll(drainBuffer, 0, max)) > 0) {
+            samplesIngested += count / channelCount;
+            for (int i = 0; i < count; i += channelCount) {
+                boolean first = !hasPendingPeak;
+                for (int c = 0; c < channelCount; c++) {
+                    float value = Math.min(Math.max(drainBuffer[i + c], 0), 1);
+                    if (first || value > pendingPeaks[c])
+                        pendingPeaks[c] = value;
+                }
+                hasPendingPeak = true;
+            }
+        }
+    }
+
+    private void allocateChannels() {
+        visibleWaves = new FloatRingBuffer[channelCount];
+        compressors = new WaveCompressor[channelCount];
+        for (int c = 0; c < channelCount; c++) {
+            visibleWaves[c] = new FloatRingBuffer(visibleSize);
+            compressors[c] = new WaveCompressor(reducer);
+            compressors[c].setInterpolate(interpolate);
+        }
+        pendingPeaks = new float[channelCount];
+        waveHeights = new float[channelCount];
+        offerFrame = new float[channelCount];
+        dynamics.reset(channelCount);
+    }
+}
@@ -0,0 +1,80 @@
+package me.kaneki.voicewaveview.core;
+
+/**
+ * @author kaneki
+ * @Desctription 波形压缩时同一区间内多个振幅的合并方式
+ */
+public enum WaveReducer {
+    /**
+     * 平均值
+     */
+    MEAN {
+        @Override
+        public float accumulate(float acc, float value) {
+            return acc + value;
+        }
+
+        @Override
+        public float merge(float acc1, float acc2) {
+            return acc1 + acc2;
+        }
+
+        @Override
+        public float result(float acc, int count) {
+            return count == 0 ? 0 : acc / count;
+        }
+    },
+    /**
+     * 峰值
+     */
+    PEAK {
+        @Override
+        public float accumulate(float acc, float value) {
+            return Math.max(acc, value);
+        }
+
+        @Override
+        public float merge(float acc1, float acc2) {
+            return Math.max(acc1, acc2);
+        }
+
+        @Override
+        public float result(float acc, int count) {
+            return acc;
+        }
+    },
+    /**
+     * 均方根
+     */
+    RMS {
+        @Override
+        public float accumulate(float acc, float value) {
+            return acc + value * value;
+        }
+
+        @Override
+        public float merge(float acc1, float acc2) {
+            return acc1 + acc2;
+        }
+
+        @Override
+        public float result(float acc, int count) {
+            return count == 0 ? 0 : (float) Math.sqrt(acc / count);
+        }
+    };
+
+    /**
+     * 向累计值中加入一个振幅
+     */
+    public abstract float accumulate(float acc, float value);
+
+    /**
+     * 合并两个区间的累计值
+     */
+    public abstract float merge(float acc1, float acc2);
+
+    /**
+     * 由累计值和样本个数得到区间结果
+     */
+    public abstract float result(float acc, int count);
+}
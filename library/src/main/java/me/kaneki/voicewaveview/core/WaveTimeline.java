@@ -0,0 +1,135 @@
+package me.kaneki.voicewaveview.core;
+
+/**
+ * @author kaneki
+ * @Desctription 可滚动缩放的波形时间轴，只对视口内的波形从金字塔合适层级采样，
+ * 每帧开销只与视口宽度有关，与录音时长无关
+ */
+public class WaveTimeline {
+    //每个波形至少对应一个样本
+    public static final double MIN_SAMPLES_PER_BAR = 1;
+
+    private WavePyramid pyramid;
+    //视口可容纳的波形个数
+    private int viewportBars;
+    private float dividerWidth;
+    //缩放比例 每个波形覆盖的样本数
+    private double samplesPerBar = MIN_SAMPLES_PER_BAR;
+    //滚动距离 像素
+    private float scroll;
+
+    /**
+     * 设置数据源，缩放为整段显示
+     * @param pyramid 全分辨率样本的金字塔，为null时清空
+     */
+    public void setSource(WavePyramid pyramid) {
+        this.pyramid = pyramid;
+        samplesPerBar = getMaxSamplesPerBar();
+        scroll = 0;
+    }
+
+    public boolean hasSource() {
+        return pyramid != null && pyramid.getSampleCount() > 0;
+    }
+
+    /**
+     * 设置视口，保持当前缩放比例
+     * @param bars 视口可容纳的波形个数
+     * @param dividerWidth 波形间距
+     */
+    public void setViewport(int bars, float dividerWidth) {
+        this.viewportBars = Math.max(bars, 1);
+        this.dividerWidth = dividerWidth;
+        samplesPerBar = clampSamplesPerBar(samplesPerBar);
+        scroll = clampScroll(scroll);
+    }
+
+    public double getSamplesPerBar() {
+        return samplesPerBar;
+    }
+
+    /**
+     * @return 最小缩放 整段恰好铺满视口
+     */
+    public double getMaxSamplesPerBar() {
+        if (pyramid == null || viewportBars == 0)
+            return MIN_SAMPLES_PER_BAR;
+        return Math.max(MIN_SAMPLES_PER_BAR, pyramid.getSampleCount() / (double) viewportBars);
+    }
+
+    /**
+     * 以focusX为中心缩放，缩放前后focusX处的样本位置不变
+     * @param samplesPerBar 每个波形覆盖的样本数
+     * @param focusX 相对视口左侧的位置
+     */
+    public void setSamplesPerBar(double samplesPerBar, float focusX) {
+        if (dividerWidth <= 0)
+            return;
+        double sample = (scroll + focusX) / dividerWidth * this.samplesPerBar;
+        this.samplesPerBar = clampSamplesPerBar(samplesPerBar);
+        scroll = clampScroll((float) (sample / this.samplesPerBar * dividerWidth - focusX));
+    }
+
+    public float getScroll() {
+        return scroll;
+    }
+
+    public void setScroll(float scroll) {
+        this.scroll = clampScroll(scroll);
+    }
+
+    public void scrollBy(float dx) {
+        setScroll(scroll + dx);
+    }
+
+    public float getMaxScroll() {
+        return Math.max(0, (getTotalBars() - viewportBars) * dividerWidth);
+    }
+
+    /**
+     * @return 当前缩放下的波形总数
+     */
+    public int getTotalBars() {
+        if (pyramid == null)
+            return 0;
+        return (int) Math.ceil(pyramid.getSampleCount() / samplesPerBar);
+    }
+
+    /**
+     * @return 第一个可见波形向左滚出视口的距离
+     */
+    public float getScrollOffset() {
+        if (dividerWidth <= 0)
+            return 0;
+        return scroll - getFirstBar() * dividerWidth;
+    }
+
+    /**
+     * 采样视口内的波形，滚动偏移不为0时多采样一个
+     * @param out 长度不小于视口波形数+1
+     * @return 有效个数
+     */
+    public int fillVisible(float[] out) {
+        if (!hasSource() || dividerWidth <= 0)
+            return 0;
+        int first = getFirstBar();
+        int count = getScrollOffset() > 0 ? viewportBars + 1 : viewportBars;
+        count = Math.min(count, getTotalBars() - first);
+        if (count <= 0)
+            return 0;
+        pyramid.resample(first * samplesPerBar, samplesPerBar, count, out, null);
+        return count;
+    }
+
+    private int getFirstBar() {
+        return (int) (scroll / dividerWidth);
+    }
+
+    private double clampSamplesPerBar(double value) {
+        return Math.min(Math.max(value, MIN_SAMPLES_PER_BAR), getMaxSamplesPerBar());
+    }
+
+    private float clampScroll(float value) {
+        return Math.min(Math.max(value, 0), getMaxScroll());
+    }
+}
@@ -2,7 +2,7 @@ package me.kaneki.voicewaveview.entity;
 
 /**
  * @author yueqian
- * @Desctription
+ * @Desctription 单条波形相对View中心的像素偏移，新数据使用WaveData中的振幅比例
  * @date 2017/6/3
  * @email yueqian@mogujie.com
  */
@@ -1,28 +1,258 @@
 package me.kaneki.voicewaveview.entity;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
+import me.kaneki.voicewaveview.core.WavePyramid;
+
 /**
  * @author yueqian
- * @Desctription
+ * @Desctription 波形数据，振幅为相对波形最大高度的比例(0-1)，内部以float数组保存
+ * 多声道时按声道分别保存，getAmplitudes返回各声道逐点取峰值的合成波形
+ * 旧版WaveBean列表保存的是像素偏移，与振幅之间通过setWaveHeight设置的波形最大高度换算，
+ * 未设置时按列表中最大的像素偏移归一化
  * @date 2017/6/3
  * @email yueqian@mogujie.com
  */
 public class WaveData {
+    private float[] amplitudes;
     private ArrayList<WaveBean> waveList;
     private long duration;
+    //按需构建的多分辨率金字塔
+    private WavePyramid pyramid;
+    //各声道振幅 单声道时为null
+    private float[][] channels;
+    //各声道按需构建的金字塔
+    private WavePyramid[] channelPyramids;
+    //数据来自WaveBean像素偏移
+    private boolean pixelBased;
+    //WaveBean像素偏移对应的波形最大高度 0表示未知
+    private float waveHeight;
 
+    /**
+     * 兼容旧版保存的数据，WaveBean为相对View中心的像素偏移，绘制时按View的波形最大高度换算为振幅
+     * @param waveList 像素偏移列表
+     * @param duration
+     * @deprecated 使用振幅比例的WaveData(float[], long)
+     */
+    @Deprecated
     public WaveData(ArrayList<WaveBean> waveList, long duration) {
         this.waveList = waveList;
         this.duration = duration;
+        this.pixelBased = true;
+    }
+
+    public WaveData(float[] amplitudes, long duration) {
+        this.amplitudes = amplitudes;
+        this.duration = duration;
+    }
+
+    /**
+     * @param channels 各声道振幅，长度必须一致
+     * @param duration
+     */
+    public WaveData(float[][] channels, long duration) {
+        if (channels.length == 0)
+            throw new IllegalArgumentException("at least one channel is required");
+        this.duration = duration;
+        if (channels.length == 1) {
+            amplitudes = channels[0];
+            return;
+        }
+        int count = channels[0].length;
+        amplitudes = new float[count];
+        for (float[] channel : channels) {
+            if (channel.length != count)
+                throw new IllegalArgumentException("channels must have the same length");
+            for (int i = 0; i < count; i++) {
+                amplitudes[i] = Math.max(amplitudes[i], channel[i]);
+            }
+        }
+        this.channels = channels;
+    }
+
+    public int getChannelCount() {
+        return channels == null ? 1 : channels.length;
+    }
+
+    /**
+     * 获取单个声道的振幅数组，调用方不应修改返回的数组
+     * @param channel 声道
+     * @return
+     */
+    public float[] getChannelAmplitudes(int channel) {
+        if (channels == null) {
+            if (channel != 0)
+                throw new IndexOutOfBoundsException("channel: " + channel);
+            return getAmplitudes();
+        }
+        return channels[channel];
+    }
+
+    /**
+     * 按目标波形个数重采样单个声道，个数一致时直接返回原数组
+     * @param channel 声道
+     * @param bars 目标波形个数
+     * @return
+     */
+    public float[] getChannelAmplitudes(int channel, int bars) {
+        return getChannelAmplitudes(channel, bars, null);
+    }
+
+    /**
+     * 按目标波形个数重采样单个声道到调用方提供的数组，个数一致时直接返回原数组
+     * @param channel 声道
+     * @param bars 目标波形个数
+     * @param out 长度等于bars时复用，否则重新分配
+     * @return 原数组或重采样结果
+     */
+    public float[] getChannelAmplitudes(int channel, int bars, float[] out) {
+        if (channels == null)
+            return channel == 0 ? getAmplitudes(bars, out) : getChannelAmplitudes(channel);
+        float[] source = channels[channel];
+        if (source.length == bars || source.length == 0 || bars <= 0)
+            return source;
+        if (channelPyramids == null)
+            channelPyramids = new WavePyramid[channels.length];
+        if (channelPyramids[channel] == null)
+            channelPyramids[channel] = new WavePyramid(source);
+        if (out == null || out.length != bars)
+            out = new float[bars];
+        channelPyramids[channel].resample(bars, out, null);
+        return out;
+    }
+
+    /**
+     * 获取振幅数组，调用方不应修改返回的数组
+     * 像素偏移数据按setWaveHeight设置的高度换算，未设置时按最大的像素偏移归一化
+     * @return
+     */
+    public float[] getAmplitudes() {
+        if (amplitudes == null && waveList != null)
+            amplitudes = toAmplitudes(waveList, waveHeight, null);
+        return amplitudes;
+    }
+
+    /**
+     * 按指定的波形最大高度换算像素偏移，不修改此对象，供View按自身高度绘制调用方的旧版数据
+     * @param waveHeight 波形最大高度 px，不大于0时按最大的像素偏移归一化
+     * @param out 长度一致时复用，否则重新分配
+     * @return 振幅数据直接返回getAmplitudes()，像素偏移数据返回换算结果
+     */
+    public float[] getAmplitudesForHeight(float waveHeight, float[] out) {
+        if (!pixelBased || waveList == null)
+            return getAmplitudes();
+        return toAmplitudes(waveList, waveHeight, out);
+    }
+
+    private static float[] toAmplitudes(ArrayList<WaveBean> waveList, float waveHeight, float[] out) {
+        int size = waveList.size();
+        if (out == null || out.length != size)
+            out = new float[size];
+        float reference = waveHeight;
+        if (reference <= 0) {
+            for (int i = 0; i < size; i++) {
+                reference = Math.max(reference, waveList.get(i).getY_offset());
+            }
+        }
+        float scale = reference > 0 ? 1 / reference : 0;
+        for (int i = 0; i < size; i++) {
+            out[i] = Math.min(Math.max(waveList.get(i).getY_offset() * scale, 0), 1);
+        }
+        return out;
     }
 
+    /**
+     * @return 相对View中心的像素偏移，振幅数据按setWaveHeight设置的高度换算，未设置时为振幅比例
+     * @deprecated 使用getAmplitudes
+     */
+    @Deprecated
     public ArrayList<WaveBean> getWaveList() {
+        if (waveList == null && amplitudes != null) {
+            float scale = waveHeight > 0 ? waveHeight : 1;
+            waveList = new ArrayList<>(amplitudes.length);
+            for (float amplitude : amplitudes) {
+                waveList.add(new WaveBean(amplitude * scale));
+            }
+        }
         return waveList;
     }
 
+    /**
+     * @param waveList 相对View中心的像素偏移列表
+     * @deprecated 使用振幅比例的WaveData(float[], long)
+     */
+    @Deprecated
     public void setWaveList(ArrayList<WaveBean> waveList) {
         this.waveList = waveList;
+        this.pixelBased = true;
+        this.amplitudes = null;
+        this.pyramid = null;
+        this.channels = null;
+        this.channelPyramids = null;
+    }
+
+    /**
+     * @return 是否为旧版WaveBean像素偏移数据
+     */
+    public boolean isPixelBased() {
+        return pixelBased;
+    }
+
+    /**
+     * 设置像素偏移与振幅换算使用的波形最大高度，影响getAmplitudes、toBytes和getWaveList
+     * View只在生成录制结果时设置，绘制调用方的数据时使用getAmplitudesForHeight
+     * @param waveHeight 波形最大高度 px
+     */
+    public void setWaveHeight(float waveHeight) {
+        if (this.waveHeight == waveHeight)
+            return;
+        this.waveHeight = waveHeight;
+        if (pixelBased) {
+            amplitudes = null;
+            pyramid = null;
+        } else {
+            waveList = null;
+        }
+    }
+
+    public float getWaveHeight() {
+        return waveHeight;
+    }
+
+    /**
+     * 获取多分辨率金字塔，首次调用时构建
+     * @return
+     */
+    public WavePyramid getPyramid() {
+        if (pyramid == null && getAmplitudes() != null)
+            pyramid = new WavePyramid(amplitudes);
+        return pyramid;
+    }
+
+    /**
+     * 按目标波形个数重采样，个数一致时直接返回原数组
+     * @param bars 目标波形个数
+     * @return
+     */
+    public float[] getAmplitudes(int bars) {
+        return getAmplitudes(bars, null);
+    }
+
+    /**
+     * 按目标波形个数重采样到调用方提供的数组，反复播放时不再分配
+     * @param bars 目标波形个数
+     * @param out 长度等于bars时复用，否则重新分配
+     * @return 原数组或重采样结果
+     */
+    public float[] getAmplitudes(int bars, float[] out) {
+        float[] source = getAmplitudes();
+        if (source == null || source.length == bars || source.length == 0 || bars <= 0)
+            return source;
+        if (out == null || out.length != bars)
+            out = new float[bars];
+        getPyramid().resample(bars, out, null);
+        return out;
     }
 
     public long getDuration() {
@@ -32,4 +262,36 @@ public class WaveData {
     public void setDuration(long duration) {
         this.duration = duration;
     }
+
+    /**
+     * 编码为8位量化的紧凑二进制格式
+     * @return
+     */
+    public byte[] toBytes() {
+        return toBytes(WaveDataCodec.BITS_8);
+    }
+
+    /**
+     * 编码为紧凑二进制格式
+     * @param bits 量化位数 8或16
+     * @return
+     */
+    public byte[] toBytes(int bits) {
+        if (channels != null)
+            return WaveDataCodec.encode(channels, duration, bits);
+        return WaveDataCodec.encode(getAmplitudes(), duration, bits);
+    }
+
+    public static WaveData fromBytes(byte[] bytes) {
+        return WaveDataCodec.decode(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * 直接从缓冲区解码，不拷贝字节
+     * @param buffer 从当前position开始读取
+     * @return
+     */
+    public static WaveData fromByteBuffer(ByteBuffer buffer) {
+        return WaveDataCodec.decode(buffer);
+    }
 }
@@ -0,0 +1,184 @@
+package me.kaneki.voicewaveview.entity;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author kaneki
+ * @Desctription WaveData紧凑二进制格式，振幅量化为8位或16位无符号整数
+ *
+ * 格式(大端)：
+ * version 1 单声道：magic(2) 'V''W' | version(1) | flags(1) | duration(8) | count(4) | amplitudes(count * 1或2)
+ * version 2 多声道：version 1的头部 | channels(1) | 保留(3) | 按声道依次排列的amplitudes(channels * count * 1或2)
+ * 单声道数据始终按version 1编码，两个版本都可以解码
+ */
+public final class WaveDataCodec {
+
+    public static final int BITS_8 = 8;
+    public static final int BITS_16 = 16;
+
+    static final short MAGIC = 0x5657;
+    static final byte VERSION = 1;
+    static final byte VERSION_MULTI_CHANNEL = 2;
+    static final int HEADER_SIZE = 16;
+    static final int HEADER_SIZE_MULTI_CHANNEL = 20;
+    //单字节保存声道数
+    public static final int MAX_CHANNELS = 255;
+
+    private static final int FLAG_16_BIT = 1;
+
+    private WaveDataCodec() {
+    }
+
+    /**
+     * @return 编码后的字节数
+     */
+    public static int getEncodedSize(int count, int bits) {
+        return getEncodedSize(count, 1, bits);
+    }
+
+    /**
+     * @param channels 声道数
+     * @return 多声道编码后的字节数
+     */
+    public static int getEncodedSize(int count, int channels, int bits) {
+        int header = channels > 1 ? HEADER_SIZE_MULTI_CHANNEL : HEADER_SIZE;
+        return header + channels * count * (bits == BITS_16 ? 2 : 1);
+    }
+
+    public static byte[] encode(float[] amplitudes, long duration, int bits) {
+        int count = amplitudes == null ? 0 : amplitudes.length;
+        ByteBuffer buffer = ByteBuffer.allocate(getEncodedSize(count, bits));
+        encode(amplitudes, duration, bits, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * 编码写入目标缓冲区，从其当前position开始
+     */
+    public static void encode(float[] amplitudes, long duration, int bits, ByteBuffer dst) {
+        checkBits(bits);
+        int count = amplitudes == null ? 0 : amplitudes.length;
+        putHeader(dst, VERSION, bits, duration, count);
+        putAmplitudes(dst, amplitudes, count, bits);
+    }
+
+    /**
+     * 编码多声道波形，各声道长度必须一致，单声道时按version 1编码
+     * @param channels 各声道振幅
+     */
+    public static byte[] encode(float[][] channels, long duration, int bits) {
+        int count = channels[0].length;
+        ByteBuffer buffer = ByteBuffer.allocate(getEncodedSize(count, channels.length, bits));
+        encode(channels, duration, bits, buffer);
+        return buffer.array();
+    }
+
+    /**
+     * 编码多声道波形写入目标缓冲区，从其当前position开始
+     */
+    public static void encode(float[][] channels, long duration, int bits, ByteBuffer dst) {
+        checkBits(bits);
+        if (channels.length == 1) {
+            encode(channels[0], duration, bits, dst);
+            return;
+        }
+        if (channels.length == 0 || channels.length > MAX_CHANNELS)
+            throw new IllegalArgumentException("channel count must be 1-" + MAX_CHANNELS + ": " + channels.length);
+        int count = channels[0].length;
+        for (float[] channel : channels) {
+            if (channel.length != count)
+                throw new IllegalArgumentException("channels must have the same length");
+        }
+        putHeader(dst, VERSION_MULTI_CHANNEL, bits, duration, count);
+        dst.put((byte) channels.length);
+        dst.put((byte) 0);
+        dst.putShort((short) 0);
+        for (float[] channel : channels) {
+            putAmplitudes(dst, channel, count, bits);
+        }
+    }
+
+    /**
+     * 从缓冲区当前position开始解码，解码后position移动到数据末尾
+     * 只分配一个float数组，不会为每个样本创建WaveBean
+     */
+    public static WaveData decode(ByteBuffer src) {
+        if (src.remaining() < HEADER_SIZE)
+            throw new IllegalArgumentException("wave data too short: " + src.remaining());
+        if (src.getShort() != MAGIC)
+            throw new IllegalArgumentException("not a wave data buffer");
+        byte version = src.get();
+        if (version != VERSION && version != VERSION_MULTI_CHANNEL)
+            throw new IllegalArgumentException("unsupported wave data version: " + version);
+        boolean is16Bit = (src.get() & FLAG_16_BIT) != 0;
+        long duration = src.getLong();
+        int count = src.getInt();
+        int channelCount = 1;
+        if (version == VERSION_MULTI_CHANNEL) {
+            if (src.remaining() < HEADER_SIZE_MULTI_CHANNEL - HEADER_SIZE)
+                throw new IllegalArgumentException("wave data too short: " + src.remaining());
+            channelCount = src.get() & 0xff;
+            src.get();
+            src.getShort();
+            if (channelCount == 0)
+                throw new IllegalArgumentException("invalid channel count: 0");
+        }
+        if (count < 0 || src.remaining() < (long) channelCount * count * (is16Bit ? 2 : 1))
+            throw new IllegalArgumentException("wave data truncated, count: " + count);
+
+        if (channelCount == 1)
+            return new WaveData(getAmplitudes(src, count, is16Bit), duration);
+        float[][] channels = new float[channelCount][];
+        for (int c = 0; c < channelCount; c++) {
+            channels[c] = getAmplitudes(src, count, is16Bit);
+        }
+        return new WaveData(channels, duration);
+    }
+
+    private static void checkBits(int bits) {
+        if (bits != BITS_8 && bits != BITS_16)
+            throw new IllegalArgumentException("bits must be 8 or 16: " + bits);
+    }
+
+    private static void putHeader(ByteBuffer dst, byte version, int bits, long duration, int count) {
+        dst.putShort(MAGIC);
+        dst.put(version);
+        dst.put((byte) (bits == BITS_16 ? FLAG_16_BIT : 0));
+        dst.putLong(duration);
+        dst.putInt(count);
+    }
+
+    private static void putAmplitudes(ByteBuffer dst, float[] amplitudes, int count, int bits) {
+        if (bits == BITS_16) {
+            for (int i = 0; i < count; i++) {
+                dst.putShort((short) quantize(amplitudes[i], 0xffff));
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                dst.put((byte) quantize(amplitudes[i], 0xff));
+            }
+        }
+    }
+
+    private static float[] getAmplitudes(ByteBuffer src, int count, boolean is16Bit) {
+        float[] amplitudes = new float[count];
+        if (is16Bit) {
+            for (int i = 0; i < count; i++) {
+                amplitudes[i] = (src.getShort() & 0xffff) / 65535f;
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                amplitudes[i] = (src.get() & 0xff) / 255f;
+            }
+        }
+        return amplitudes;
+    }
+
+    private static int quantize(float amplitude, int max) {
+        if (amplitude <= 0)
+            return 0;
+        if (amplitude >= 1)
+            return max;
+        return Math.round(amplitude * max);
+    }
+}
@@ -0,0 +1,63 @@
+package me.kaneki.voicewaveview.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author kaneki
+ * @Desctription 手动推进的帧时钟，每次tick按固定帧间隔推进时间并执行已注册的回调，不依赖真实时间
+ */
+final class FakeFrameClock implements FrameClock {
+    private final long frameIntervalNanos;
+    private long frameTimeNanos;
+    private List<FrameCallback> pending = new ArrayList<FrameCallback>();
+    //正在执行的回调，与pending交替使用，tick时不分配对象
+    private List<FrameCallback> running = new ArrayList<FrameCallback>();
+
+    FakeFrameClock(long frameIntervalNanos) {
+        this.frameIntervalNanos = frameIntervalNanos;
+    }
+
+    @Override
+    public void postFrameCallback(FrameCallback callback) {
+        if (!pending.contains(callback))
+            pending.add(callback);
+    }
+
+    @Override
+    public void removeFrameCallback(FrameCallback callback) {
+        pending.remove(callback);
+    }
+
+    /**
+     * 推进一帧，回调中重新注册的回调在下一帧执行
+     * @return 本帧是否执行了回调
+     */
+    boolean tick() {
+        frameTimeNanos += frameIntervalNanos;
+        List<FrameCallback> callbacks = pending;
+        pending = running;
+        running = callbacks;
+        int count = callbacks.size();
+        for (int i = 0; i < count; i++) {
+            callbacks.get(i).doFrame(frameTimeNanos);
+        }
+        callbacks.clear();
+        return count > 0;
+    }
+
+    /**
+     * 跳过若干帧不执行回调，模拟主线程卡顿
+     */
+    void stall(int frames) {
+        frameTimeNanos += frames * frameIntervalNanos;
+    }
+
+    boolean hasPendingCallbacks() {
+        return !pending.isEmpty();
+    }
+
+    long getFrameTimeNanos() {
+        return frameTimeNanos;
+    }
+}
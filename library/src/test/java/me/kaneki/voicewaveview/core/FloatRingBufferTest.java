@@ -0,0 +1,46 @@
+package me.kaneki.voicewaveview.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FloatRingBufferTest {
+    @Test
+    public void add_overwritesOldestWhenFull() throws Exception {
+        FloatRingBuffer buffer = new FloatRingBuffer(3);
+        for (int i = 1; i <= 5; i++) {
+            buffer.add(i);
+        }
+        assertEquals(3, buffer.size());
+        assertEquals(3f, buffer.get(0), 0f);
+        assertEquals(5f, buffer.get(2), 0f);
+
+        float[] out = new float[3];
+        assertEquals(3, buffer.copyTo(out, 0));
+        assertArrayEquals(new float[]{3, 4, 5}, out, 0f);
+    }
+
+    @Test
+    public void resize_keepsNewestValues() throws Exception {
+        FloatRingBuffer buffer = new FloatRingBuffer(4);
+        for (int i = 1; i <= 6; i++) {
+            buffer.add(i);
+        }
+        buffer.resize(2);
+        assertEquals(2, buffer.size());
+        assertEquals(5f, buffer.get(0), 0f);
+        assertEquals(6f, buffer.get(1), 0f);
+    }
+
+    @Test
+    public void floatArrayList_grows() throws Exception {
+        FloatArrayList list = new FloatArrayList(1);
+        for (int i = 0; i < 1000; i++) {
+            list.add(i);
+        }
+        assertEquals(1000, list.size());
+        assertEquals(999f, list.get(999), 0f);
+        list.clear();
+        assertTrue(list.isEmpty());
+    }
+}
@@ -0,0 +1,56 @@
+package me.kaneki.voicewaveview.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FloatSpscQueueTest {
+    @Test
+    public void offer_dropsWhenFull() throws Exception {
+        FloatSpscQueue queue = new FloatSpscQueue(5);
+        assertEquals(8, queue.capacity());
+        float[] values = new float[10];
+        assertEquals(8, queue.offer(values, 0, 10));
+        assertEquals(2, queue.getDroppedCount());
+        assertFalse(queue.offer(1f));
+
+        float[] out = new float[4];
+        assertEquals(4, queue.poll(out, 0, 4));
+        assertTrue(queue.offer(1f));
+        assertEquals(5, queue.size());
+    }
+
+    @Test
+    public void producerConsumer_keepsOrder() throws Exception {
+        final FloatSpscQueue queue = new FloatSpscQueue(64);
+        final int total = 200000;
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                float[] batch = new float[16];
+                int next = 0;
+                while (next < total) {
+                    int count = Math.min(batch.length, total - next);
+                    for (int i = 0; i < count; i++) {
+                        batch[i] = next + i;
+                    }
+                    int written = 0;
+                    while (written < count) {
+                        written += queue.offer(batch, written, count - written);
+                    }
+                    next += count;
+                }
+            }
+        });
+        producer.start();
+        float[] out = new float[32];
+        int expected = 0;
+        while (expected < total) {
+            int count = queue.poll(out, 0, out.length);
+            for (int i = 0; i < count; i++) {
+                assertEquals(expected++, out[i], 0f);
+            }
+        }
+        producer.join();
+    }
+}
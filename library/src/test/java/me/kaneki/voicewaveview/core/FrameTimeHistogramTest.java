@@ -0,0 +1,25 @@
+package me.kaneki.voicewaveview.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameTimeHistogramTest {
+    @Test
+    public void record_bucketsByDuration() throws Exception {
+        FrameTimeHistogram histogram = new FrameTimeHistogram();
+        histogram.record(500000L);
+        histogram.record(3000000L);
+        histogram.record(20000000L);
+        histogram.record(50000000L);
+        assertEquals(4, histogram.getTotalCount());
+        assertEquals(1, histogram.getCount(0));
+        assertEquals(1, histogram.getCount(2));
+        assertEquals(1, histogram.getCount(5));
+        assertEquals(1, histogram.getCount(histogram.getBucketCount() - 1));
+        assertEquals(2, histogram.getCountOver(16000000L));
+        assertEquals(50000000L, histogram.getMaxNanos());
+        histogram.reset();
+        assertEquals(0, histogram.getTotalCount());
+    }
+}
@@ -0,0 +1,43 @@
+package me.kaneki.voicewaveview.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameTimerTest {
+    private static final long FRAME = 16666667L;
+
+    @Test
+    public void update_accumulatesFrameDeltas() throws Exception {
+        FrameTimer timer = new FrameTimer();
+        long start = 123456789L;
+        assertEquals(0, timer.update(start));
+        for (int i = 1; i <= 60; i++) {
+            timer.update(start + i * FRAME);
+        }
+        assertEquals(1000, timer.getElapsedMillis());
+    }
+
+    @Test
+    public void pause_excludesPausedTime() throws Exception {
+        FrameTimer timer = new FrameTimer();
+        timer.update(0);
+        timer.update(100 * 1000000L);
+        timer.pause();
+        //暂停5秒后恢复
+        timer.update(5100 * 1000000L);
+        timer.update(5200 * 1000000L);
+        assertEquals(200, timer.getElapsedMillis());
+    }
+
+    @Test
+    public void speedAndSeek() throws Exception {
+        FrameTimer timer = new FrameTimer();
+        timer.setSpeed(2);
+        timer.update(0);
+        assertEquals(200, timer.update(100 * 1000000L));
+        timer.setElapsedMillis(1000);
+        timer.setSpeed(0.5f);
+        assertEquals(1050, timer.update(200 * 1000000L));
+    }
+}
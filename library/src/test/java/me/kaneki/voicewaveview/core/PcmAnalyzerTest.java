@@ -0,0 +1,100 @@
+package me.kaneki.voicewaveview.core;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import me.kaneki.voicewaveview.entity.WaveData;
+
+import static org.junit.Assert.*;
+
+public class PcmAnalyzerTest {
+
+    private final float[] received = new float[16];
+    private int receivedCount;
+
+    private final PcmAnalyzer.AmplitudeSink sink = new PcmAnalyzer.AmplitudeSink() {
+        @Override
+        public void onAmplitudes(float[] values, int offset, int count) {
+            System.arraycopy(values, offset, received, receivedCount, count);
+            receivedCount += count;
+        }
+    };
+
+    @Test
+    public void peakAndRms_perWindow() throws Exception {
+        //1000Hz采样 10ms窗口即10个样本
+        short[] pcm = new short[25];
+        for (int i = 0; i < 10; i++) {
+            pcm[i] = (short) (i % 2 == 0 ? 16384 : -16384);
+        }
+        pcm[15] = Short.MIN_VALUE;
+
+        PcmAnalyzer peak = new PcmAnalyzer(1000, 10, PcmAnalyzer.Mode.PEAK);
+        peak.process(pcm, 0, pcm.length, sink);
+        assertEquals(2, receivedCount);
+        assertEquals(0.5f, received[0], 1e-6f);
+        assertEquals(1f, received[1], 1e-6f);
+        peak.flush(sink);
+        assertEquals(3, receivedCount);
+        assertEquals(0f, received[2], 0f);
+
+        receivedCount = 0;
+        PcmAnalyzer rms = new PcmAnalyzer(1000, 10, PcmAnalyzer.Mode.RMS);
+        rms.process(pcm, 0, 10, sink);
+        assertEquals(0.5f, received[0], 1e-6f);
+    }
+
+    @Test
+    public void dbfs_mapsFloorToZero() throws Exception {
+        short[] pcm = new short[10];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = 32767;
+        }
+        PcmAnalyzer dbfs = new PcmAnalyzer(1000, 10, PcmAnalyzer.Mode.DBFS);
+        dbfs.process(pcm, 0, pcm.length, sink);
+        dbfs.process(new short[10], 0, 10, sink);
+        assertEquals(1f, received[0], 1e-3f);
+        assertEquals(0f, received[1], 0f);
+    }
+
+    @Test
+    public void interleaved_perChannel() throws Exception {
+        //双声道 左声道满幅 右声道一半
+        short[] pcm = new short[20];
+        for (int i = 0; i < 10; i++) {
+            pcm[i * 2] = Short.MIN_VALUE;
+            pcm[i * 2 + 1] = 16384;
+        }
+        PcmAnalyzer peak = new PcmAnalyzer(1000, 2, 10, PcmAnalyzer.Mode.PEAK);
+        peak.process(pcm, 0, 15, sink);
+        assertEquals(0, receivedCount);
+        peak.process(pcm, 15, 5, sink);
+        assertEquals(2, receivedCount);
+        assertEquals(1f, received[0], 1e-6f);
+        assertEquals(0.5f, received[1], 1e-6f);
+        assertEquals(10, peak.getProcessedMillis());
+
+        WaveData waveData = new WaveDataBuilder(1000, 2, 1, PcmAnalyzer.Mode.PEAK, WaveReducer.PEAK)
+                .process(pcm, 0, pcm.length)
+                .build();
+        assertEquals(2, waveData.getChannelCount());
+        assertEquals(1f, waveData.getChannelAmplitudes(0)[0], 1e-6f);
+        assertEquals(0.5f, waveData.getChannelAmplitudes(1)[0], 1e-6f);
+    }
+
+    @Test
+    public void builder_fromByteBuffer() throws Exception {
+        //8kHz 2秒 前半段静音后半段满幅
+        ByteBuffer pcm = ByteBuffer.allocate(16000 * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < 16000; i++) {
+            pcm.putShort(i * 2, (short) (i < 8000 ? 0 : 32767));
+        }
+        WaveData waveData = new WaveDataBuilder(8000, 1, 4, PcmAnalyzer.Mode.PEAK, WaveReducer.PEAK)
+                .process(pcm)
+                .build();
+        assertEquals(2000, waveData.getDuration());
+        assertArrayEquals(new float[]{0f, 0f, 1f, 1f}, waveData.getAmplitudes(), 1e-3f);
+    }
+}
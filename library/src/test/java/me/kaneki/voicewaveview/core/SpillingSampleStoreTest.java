@@ -0,0 +1,139 @@
+package me.kaneki.voicewaveview.core;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import me.kaneki.voicewaveview.entity.WaveData;
+
+import static org.junit.Assert.*;
+
+public class SpillingSampleStoreTest {
+    @Test
+    public void read_acrossSpilledChunks() throws Exception {
+        File file = File.createTempFile("samples", ".bin");
+        file.deleteOnExit();
+        SpillingSampleStore store = new SpillingSampleStore(file, 50, 8);
+        for (int i = 0; i < 30; i++) {
+            store.add(i);
+        }
+        assertEquals(30, store.size());
+        //前3段已落盘
+        store.awaitWrites();
+        assertEquals(16 + 24 * 4, file.length());
+
+        float[] out = new float[12];
+        assertEquals(12, store.read(4, out, 0, 12));
+        for (int i = 0; i < 12; i++) {
+            assertEquals(4 + i, out[i], 0f);
+        }
+        assertEquals(10, store.read(20, out, 0, 12));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(20 + i, out[i], 0f);
+        }
+        store.close();
+    }
+
+    @Test
+    public void recover_afterFlush() throws Exception {
+        File file = File.createTempFile("samples", ".bin");
+        file.deleteOnExit();
+        SpillingSampleStore store = new SpillingSampleStore(file, 50, 6);
+        for (int i = 0; i < 16; i++) {
+            store.add(i < 8 ? 0.2f : 0.6f);
+        }
+        store.flush();
+        store.awaitWrites();
+        //模拟异常退出，不调用close
+        WaveData waveData = SpillingSampleStore.recover(file, 2);
+        assertEquals(800, waveData.getDuration());
+        assertArrayEquals(new float[]{0.2f, 0.6f}, waveData.getAmplitudes(), 1e-6f);
+        store.close();
+    }
+
+    @Test
+    public void recover_withoutFlush_losesAtMostOneSecond() throws Exception {
+        File file = File.createTempFile("samples", ".bin");
+        file.deleteOnExit();
+        //100ms间隔时每10个样本写入一次未写满的段
+        SpillingSampleStore store = new SpillingSampleStore(file, 100, 64);
+        for (int i = 0; i < 25; i++) {
+            store.add(0.5f);
+        }
+        store.awaitWrites();
+        //模拟异常退出，不调用flush和close
+        WaveData waveData = SpillingSampleStore.recover(file, 1);
+        assertEquals(2000, waveData.getDuration());
+        assertEquals(0.5f, waveData.getAmplitudes()[0], 1e-6f);
+        store.close();
+    }
+
+    @Test
+    public void readAll_onWriterThread() throws Exception {
+        File file = File.createTempFile("samples", ".bin");
+        file.deleteOnExit();
+        SpillingSampleStore store = new SpillingSampleStore(file, 50, 8);
+        for (int i = 0; i < 21; i++) {
+            store.add(i);
+        }
+        final float[][] result = new float[1][];
+        final Thread[] callbackThread = new Thread[1];
+        final CountDownLatch latch = new CountDownLatch(1);
+        store.readAll(new SpillingSampleStore.ReadCallback() {
+            @Override
+            public void onRead(float[] samples) {
+                result[0] = samples;
+                callbackThread[0] = Thread.currentThread();
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(IOException e) {
+                fail(e.toString());
+            }
+        });
+        //读回之后提交的写入不影响结果
+        for (int i = 0; i < 8; i++) {
+            store.add(-1);
+        }
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(callbackThread[0] != Thread.currentThread());
+        assertEquals(21, result[0].length);
+        for (int i = 0; i < 21; i++) {
+            assertEquals(i, result[0][i], 0f);
+        }
+        store.close();
+    }
+
+    @Test
+    public void readAll_afterClose_reportsError() throws Exception {
+        File file = File.createTempFile("samples", ".bin");
+        file.deleteOnExit();
+        SpillingSampleStore store = new SpillingSampleStore(file, 50, 4);
+        for (int i = 0; i < 10; i++) {
+            store.add(0.5f);
+        }
+        store.close();
+        final IOException[] error = new IOException[1];
+        final CountDownLatch latch = new CountDownLatch(1);
+        store.readAll(new SpillingSampleStore.ReadCallback() {
+            @Override
+            public void onRead(float[] samples) {
+                latch.countDown();
+            }
+
+            @Override
+            public void onError(IOException e) {
+                error[0] = e;
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertNotNull(error[0]);
+        assertSame(error[0], store.getError());
+        assertTrue(store.isFailed());
+    }
+}
@@ -0,0 +1,60 @@
+package me.kaneki.voicewaveview.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WaveCompressorTest {
+    @Test
+    public void downsample_keepsRemainderSamples() throws Exception {
+        WaveCompressor compressor = new WaveCompressor(WaveReducer.PEAK);
+        compressor.reset(4);
+        for (int i = 0; i < 101; i++) {
+            compressor.add(i == 100 ? 1f : 0.1f);
+        }
+        float[] result = compressor.getResult();
+        assertEquals(4, result.length);
+        //最后一个样本不会被丢弃
+        assertEquals(1f, result[3], 0f);
+        assertEquals(0.1f, result[0], 0f);
+    }
+
+    @Test
+    public void downsample_meanAndRms() throws Exception {
+        WaveCompressor mean = new WaveCompressor(WaveReducer.MEAN);
+        WaveCompressor rms = new WaveCompressor(WaveReducer.RMS);
+        mean.reset(10);
+        rms.reset(10);
+        for (int i = 0; i < 1000; i++) {
+            float value = i % 2 == 0 ? 0.2f : 0.4f;
+            mean.add(value);
+            rms.add(value);
+        }
+        float[] meanResult = mean.getResult();
+        float[] rmsResult = rms.getResult();
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0.3f, meanResult[i], 1e-4f);
+            assertEquals((float) Math.sqrt(0.1), rmsResult[i], 1e-4f);
+        }
+    }
+
+    @Test
+    public void upsample_interpolates() throws Exception {
+        WaveCompressor compressor = new WaveCompressor(WaveReducer.MEAN);
+        compressor.setInterpolate(true);
+        compressor.reset(5);
+        compressor.add(0f);
+        compressor.add(1f);
+        assertArrayEquals(new float[]{0f, 0.25f, 0.5f, 0.75f, 1f}, compressor.getResult(), 1e-6f);
+
+        compressor.setInterpolate(false);
+        assertArrayEquals(new float[]{0f, 0f, 0f, 1f, 1f}, compressor.getResult(), 0f);
+    }
+
+    @Test
+    public void empty_returnsNoLines() throws Exception {
+        WaveCompressor compressor = new WaveCompressor(WaveReducer.MEAN);
+        compressor.reset(8);
+        assertEquals(0, compressor.getResult().length);
+    }
+}
@@ -0,0 +1,81 @@
+package me.kaneki.voicewaveview.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import me.kaneki.voicewaveview.entity.WaveBean;
+import me.kaneki.voicewaveview.entity.WaveData;
+
+import static org.junit.Assert.*;
+
+public class WaveDataCacheTest {
+    @Test
+    public void getAmplitudes_cachesResampledWidth() throws Exception {
+        WaveDataCache cache = new WaveDataCache(1024 * 1024);
+        cache.put("a", new WaveData(new float[100], 1000));
+        float[] first = cache.getAmplitudes("a", 40);
+        assertEquals(40, first.length);
+        assertSame(first, cache.getAmplitudes("a", 40));
+        assertEquals(100, cache.getAmplitudes("a", 100).length);
+        assertEquals(1000, cache.getDuration("a"));
+        assertNull(cache.getAmplitudes("b", 40));
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() throws Exception {
+        //每个条目约 64 + 100 * 4 字节
+        WaveDataCache cache = new WaveDataCache(1000);
+        cache.put("a", new WaveData(new float[100], 0));
+        cache.put("b", new WaveData(new float[100], 0));
+        cache.get("a");
+        cache.put("c", new WaveData(new float[100], 0));
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+        assertTrue(cache.getSizeBytes() <= 1000);
+    }
+
+    @Test
+    public void put_doesNotKeepCallerList() throws Exception {
+        ArrayList<WaveBean> list = new ArrayList<>();
+        list.add(new WaveBean(30));
+        list.add(new WaveBean(60));
+        WaveData waveData = new WaveData(list, 10);
+        WaveDataCache cache = new WaveDataCache(1024);
+        //未设置波形高度的像素偏移按最大偏移归一化，不会全部截断为1
+        cache.put("a", waveData);
+        assertNotSame(waveData, cache.get("a"));
+        assertEquals(2, list.size());
+        assertArrayEquals(new float[]{0.5f, 1f}, cache.getAmplitudes("a", 2), 0f);
+    }
+
+    @Test
+    public void put_copiesCallerArrays() throws Exception {
+        float[] amplitudes = {0.5f, 0.5f};
+        float[][] channels = {{0.2f, 0.2f}, {0.4f, 0.4f}};
+        WaveDataCache cache = new WaveDataCache(1024);
+        cache.put("mono", new WaveData(amplitudes, 10));
+        cache.put("stereo", new WaveData(channels, 10));
+        amplitudes[0] = 1f;
+        channels[1][0] = 1f;
+        assertEquals(0.5f, cache.getAmplitudes("mono", 0)[0], 0f);
+        assertEquals(0.4f, cache.getChannels("stereo", 0)[1][0], 0f);
+        assertEquals(0.4f, cache.getAmplitudes("stereo", 0)[0], 0f);
+    }
+
+    @Test
+    public void getChannels_cachesResampledChannels() throws Exception {
+        WaveDataCache cache = new WaveDataCache(1024 * 1024);
+        cache.put("a", new WaveData(new float[][]{new float[100], new float[100]}, 1000));
+        cache.put("mono", new WaveData(new float[100], 1000));
+        assertNull(cache.getChannels("mono", 40));
+
+        float[][] channels = cache.getChannels("a", 40);
+        assertEquals(2, channels.length);
+        assertEquals(40, channels[1].length);
+        //同一宽度再次绑定时不重新采样
+        assertSame(channels, cache.getChannels("a", 40));
+        assertEquals(100, cache.getChannels("a", 100)[0].length);
+    }
+}
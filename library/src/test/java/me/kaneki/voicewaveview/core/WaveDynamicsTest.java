@@ -0,0 +1,80 @@
+package me.kaneki.voicewaveview.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WaveDynamicsTest {
+    @Test
+    public void disabled_passesThrough() throws Exception {
+        WaveDynamics dynamics = new WaveDynamics(50);
+        dynamics.reset(1);
+        assertFalse(dynamics.isEnabled());
+        assertEquals(0.7f, dynamics.process(0, 0.7f), 0f);
+        assertEquals(0.1f, dynamics.process(0, 0.1f), 0f);
+    }
+
+    @Test
+    public void attackAndRelease_followTimeConstants() throws Exception {
+        WaveDynamics dynamics = new WaveDynamics(50);
+        dynamics.setAttackTime(50);
+        dynamics.setReleaseTime(500);
+        dynamics.reset(1);
+        //一个时间常数后达到阶跃的1-1/e
+        assertEquals(1 - Math.exp(-1), dynamics.process(0, 1), 1e-4);
+        for (int i = 0; i < 20; i++) {
+            dynamics.process(0, 1);
+        }
+        float top = dynamics.process(0, 1);
+        assertEquals(1f, top, 1e-4);
+        //下降比上升慢得多
+        float released = dynamics.process(0, 0);
+        assertEquals(top * Math.exp(-0.1), released, 1e-4);
+    }
+
+    @Test
+    public void peakHold_holdsThenDecays() throws Exception {
+        WaveDynamics dynamics = new WaveDynamics(50);
+        dynamics.setPeakHoldTime(100);
+        dynamics.setReleaseTime(100);
+        dynamics.reset(2);
+        assertEquals(0.8f, dynamics.process(0, 0.8f), 0f);
+        //保持100ms 即两个采样间隔
+        assertEquals(0.8f, dynamics.process(0, 0.1f), 0f);
+        assertEquals(0.8f, dynamics.process(0, 0.1f), 0f);
+        float decayed = dynamics.process(0, 0.1f);
+        assertTrue(decayed < 0.8f && decayed > 0.1f);
+        //新的峰值重新开始保持
+        assertEquals(0.9f, dynamics.process(0, 0.9f), 1e-6);
+        //各声道独立
+        assertTrue(dynamics.process(1, 0.2f) < 0.9f);
+    }
+
+    @Test
+    public void dbScale_mapsFloorToZero() throws Exception {
+        WaveDynamics dynamics = new WaveDynamics(50);
+        dynamics.setScale(AmplitudeScale.DB);
+        dynamics.setDbFloor(-40);
+        dynamics.reset(1);
+        assertEquals(1f, dynamics.process(0, 1f), 1e-6);
+        assertEquals(0.5f, dynamics.process(0, 0.1f), 1e-5);
+        assertEquals(0f, dynamics.process(0, 0.001f), 0f);
+        assertEquals(0f, dynamics.process(0, 0f), 0f);
+    }
+
+    @Test
+    public void recorder_appliesDynamicsPerSample() throws Exception {
+        WaveRecorder recorder = new WaveRecorder(50, 0, WaveReducer.PEAK);
+        recorder.getDynamics().setAttackTime(100);
+        recorder.setVisibleSize(4);
+        recorder.start(4);
+        recorder.offer(1f);
+        //一帧补齐两个采样点，每个采样点各推进一次包络
+        assertEquals(2, recorder.advance(100));
+        FloatRingBuffer visible = recorder.getVisibleWave();
+        float first = visible.get(2);
+        float second = visible.get(3);
+        assertEquals(1 - Math.exp(-0.5), first, 1e-4);
+        assertEquals(1 - Math.exp(-1), second, 1e-4);
+    }
+}
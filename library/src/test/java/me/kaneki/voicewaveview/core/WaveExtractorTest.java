@@ -0,0 +1,140 @@
+package me.kaneki.voicewaveview.core;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.CancellationException;
+
+import me.kaneki.voicewaveview.entity.WaveData;
+
+import static org.junit.Assert.*;
+
+public class WaveExtractorTest {
+
+    private File writeWav(short[] samples, int sampleRate, int channels) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(44 + 8 + samples.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("RIFF".getBytes("US-ASCII")).putInt(buffer.capacity() - 8).put("WAVE".getBytes("US-ASCII"));
+        buffer.put("fmt ".getBytes("US-ASCII")).putInt(16).putShort((short) 1).putShort((short) channels)
+                .putInt(sampleRate).putInt(sampleRate * channels * 2).putShort((short) (channels * 2)).putShort((short) 16);
+        //额外的块应被跳过
+        buffer.put("LIST".getBytes("US-ASCII")).putInt(0);
+        buffer.put("data".getBytes("US-ASCII")).putInt(samples.length * 2);
+        for (short sample : samples) {
+            buffer.putShort(sample);
+        }
+        File file = File.createTempFile("wave", ".wav");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(buffer.array());
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    @Test
+    public void wav_peakPerBar() throws Exception {
+        short[] samples = new short[8000];
+        samples[100] = 16384;
+        samples[7999] = -32768;
+        File file = writeWav(samples, 8000, 1);
+        WaveData waveData = WaveExtractor.fromWav(file, 8)
+                .setWindowMillis(0)
+                .setMode(PcmAnalyzer.Mode.PEAK)
+                .call();
+        assertEquals(1000, waveData.getDuration());
+        float[] amplitudes = waveData.getAmplitudes();
+        assertEquals(8, amplitudes.length);
+        assertEquals(0.5f, amplitudes[0], 1e-6f);
+        assertEquals(0f, amplitudes[4], 0f);
+        assertEquals(1f, amplitudes[7], 0f);
+    }
+
+    @Test
+    public void wav_fewerFramesThanBars() throws Exception {
+        //双声道 2帧
+        File file = writeWav(new short[]{0, 16384, 0, 0}, 1000, 2);
+        float[] amplitudes = WaveExtractor.fromWav(file, 4)
+                .setWindowMillis(0)
+                .setMode(PcmAnalyzer.Mode.PEAK)
+                .call()
+                .getAmplitudes();
+        assertArrayEquals(new float[]{0.5f, 0.5f, 0f, 0f}, amplitudes, 1e-6f);
+    }
+
+    @Test
+    public void default_matchesLivePipeline() throws Exception {
+        //8kHz 3秒 音量逐渐变化 最后一个窗口不完整
+        short[] samples = new short[24100];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (Math.sin(i * 0.3) * (i % 4000) * 8);
+        }
+        File file = writeWav(samples, 8000, 1);
+        float[] extracted = WaveExtractor.fromWav(file, 16).call().getAmplitudes();
+
+        //与pushPcm相同：50ms窗口DBFS振幅，再按MEAN压缩
+        final WaveCompressor compressor = new WaveCompressor(WaveReducer.MEAN);
+        compressor.reset(16);
+        PcmAnalyzer analyzer = new PcmAnalyzer(8000, WaveExtractor.DEFAULT_WINDOW_MILLIS, PcmAnalyzer.Mode.DBFS);
+        PcmAnalyzer.AmplitudeSink sink = new PcmAnalyzer.AmplitudeSink() {
+            @Override
+            public void onAmplitudes(float[] values, int offset, int count) {
+                for (int i = 0; i < count; i++) {
+                    compressor.add(values[offset + i]);
+                }
+            }
+        };
+        analyzer.process(samples, 0, samples.length, sink);
+        analyzer.flush(sink);
+        assertArrayEquals(compressor.getResult(), extracted, 1e-6f);
+
+        //WaveDataBuilder默认使用同一个窗口
+        WaveData built = new WaveDataBuilder(8000, 1, 16, PcmAnalyzer.Mode.DBFS, WaveReducer.MEAN)
+                .process(samples, 0, samples.length)
+                .build();
+        assertArrayEquals(extracted, built.getAmplitudes(), 1e-6f);
+    }
+
+    @Test
+    public void stereo_keepsChannels() throws Exception {
+        //8kHz 2秒 左声道前半段满幅 右声道后半段满幅
+        short[] samples = new short[32000];
+        for (int i = 0; i < 16000; i++) {
+            samples[i * 2] = (short) (i < 8000 ? 32767 : 0);
+            samples[i * 2 + 1] = (short) (i < 8000 ? 0 : 32767);
+        }
+        File file = writeWav(samples, 8000, 2);
+        WaveData extracted = WaveExtractor.fromWav(file, 4).setMode(PcmAnalyzer.Mode.PEAK).call();
+        assertEquals(2, extracted.getChannelCount());
+        assertEquals(2000, extracted.getDuration());
+        assertEquals(1f, extracted.getChannelAmplitudes(0)[0], 1e-3f);
+        assertEquals(0f, extracted.getChannelAmplitudes(0)[3], 1e-3f);
+        assertEquals(0f, extracted.getChannelAmplitudes(1)[0], 1e-3f);
+        assertEquals(1f, extracted.getChannelAmplitudes(1)[3], 1e-3f);
+
+        //与pushPcm多声道录制相同的窗口和压缩
+        WaveData built = new WaveDataBuilder(8000, 2, 4, PcmAnalyzer.Mode.PEAK, WaveReducer.MEAN)
+                .process(samples, 0, samples.length)
+                .build();
+        assertArrayEquals(built.getChannelAmplitudes(0), extracted.getChannelAmplitudes(0), 1e-6f);
+        assertArrayEquals(built.getChannelAmplitudes(1), extracted.getChannelAmplitudes(1), 1e-6f);
+
+        //直接按波形区间统计时同样分声道
+        WaveData direct = WaveExtractor.fromWav(file, 4).setWindowMillis(0).setMode(PcmAnalyzer.Mode.PEAK).call();
+        assertEquals(2, direct.getChannelCount());
+        assertArrayEquals(new float[]{1f, 1f, 0f, 0f}, direct.getChannelAmplitudes(0), 1e-3f);
+        assertArrayEquals(new float[]{0f, 0f, 1f, 1f}, direct.getChannelAmplitudes(1), 1e-3f);
+    }
+
+    @Test(expected = CancellationException.class)
+    public void cancel_stopsExtraction() throws Exception {
+        File file = writeWav(new short[200000], 8000, 1);
+        WaveExtractor extractor = WaveExtractor.fromWav(file, 16);
+        extractor.cancel();
+        extractor.call();
+    }
+}
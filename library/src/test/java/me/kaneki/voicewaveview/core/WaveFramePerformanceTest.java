@@ -0,0 +1,98 @@
+package me.kaneki.voicewaveview.core;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import me.kaneki.voicewaveview.entity.WaveData;
+
+import static org.junit.Assert.*;
+
+/**
+ * 录制帧和播放的内存分配回归测试，稳定状态下每帧不应分配对象
+ * 耗时受机器负载影响，见benchmark模块中的FrameBenchmark
+ */
+public class WaveFramePerformanceTest {
+    private static final int WARMUP_FRAMES = 2000;
+    private static final int MEASURE_FRAMES = 2000;
+
+    @Test
+    public void recordFrame_allocatesNothing() throws Exception {
+        com.sun.management.ThreadMXBean threadBean = getThreadBean();
+        //不支持统计时标记为跳过，避免无法检测的回归被当作通过
+        Assume.assumeTrue("thread allocation tracking unsupported", threadBean != null);
+        long threadId = Thread.currentThread().getId();
+        //预分配足够的原始波形容量，稳定状态下每帧不应分配对象
+        WaveHarness harness = new WaveHarness(2000, 200, 2, 16, 600);
+        //动态处理只使用固定的状态数组
+        WaveDynamics dynamics = harness.recorder.getDynamics();
+        dynamics.setScale(AmplitudeScale.DB);
+        dynamics.setAttackTime(30);
+        dynamics.setReleaseTime(300);
+        dynamics.setPeakHoldTime(200);
+        harness.startRecord();
+        runRecordFrames(harness, WARMUP_FRAMES);
+
+        //扣除读取分配计数本身的开销
+        long overhead = threadBean.getThreadAllocatedBytes(threadId);
+        overhead = threadBean.getThreadAllocatedBytes(threadId) - overhead;
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        runRecordFrames(harness, MEASURE_FRAMES);
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before - overhead;
+        assertTrue("record frames allocated " + allocated + " bytes", allocated < MEASURE_FRAMES);
+    }
+
+    @Test
+    public void playbackRestart_allocatesNothing() throws Exception {
+        com.sun.management.ThreadMXBean threadBean = getThreadBean();
+        Assume.assumeTrue("thread allocation tracking unsupported", threadBean != null);
+        long threadId = Thread.currentThread().getId();
+        float[] amplitudes = new float[1000];
+        for (int i = 0; i < amplitudes.length; i++) {
+            amplitudes[i] = (i % 50) / 50f;
+        }
+        WaveData[] messages = {new WaveData(amplitudes, 1000), new WaveData(amplitudes.clone(), 800)};
+        WaveHarness harness = new WaveHarness(600, 100, 10, 50, 60);
+        //与VoiceWaveView相同，重采样结果写入复用的缓冲区
+        float[] buffer = null;
+        //预热足够次数，等待JIT完成编译后再统计
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            buffer = messages[i & 1].getAmplitudes(harness.getLines(), buffer);
+            harness.play(buffer, messages[i & 1].getDuration(), null);
+        }
+
+        long overhead = threadBean.getThreadAllocatedBytes(threadId);
+        overhead = threadBean.getThreadAllocatedBytes(threadId) - overhead;
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        //在多条消息之间反复切换播放
+        int restarts = 200;
+        for (int i = 0; i < restarts; i++) {
+            buffer = messages[i & 1].getAmplitudes(harness.getLines(), buffer);
+            harness.play(buffer, messages[i & 1].getDuration(), null);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before - overhead;
+        assertTrue("playback restarts allocated " + allocated + " bytes", allocated < restarts);
+    }
+
+    private static void runRecordFrames(WaveHarness harness, int frames) {
+        for (int i = 0; i < frames; i++) {
+            harness.recorder.offer((i % 37) / 37f);
+            harness.clock.tick();
+            harness.driver.buildRecordGeometry();
+        }
+    }
+
+    /**
+     * @return 不支持线程内存分配统计的JVM返回null，调用方据此跳过测试
+     */
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            return null;
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        if (!threadBean.isThreadAllocatedMemorySupported() || !threadBean.isThreadAllocatedMemoryEnabled())
+            return null;
+        return threadBean;
+    }
+}
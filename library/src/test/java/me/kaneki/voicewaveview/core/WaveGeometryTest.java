@@ -0,0 +1,46 @@
+package me.kaneki.voicewaveview.core;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WaveGeometryTest {
+    @Test
+    public void build_alignsRightAndBumpsVersion() throws Exception {
+        WaveGeometry geometry = new WaveGeometry();
+        geometry.setBounds(100, 50, 10, 40, 1);
+        int version = geometry.getVersion();
+        geometry.build(new float[]{0.5f, 1f}, 2);
+        assertFalse(geometry.isDirty());
+        assertTrue(version != geometry.getVersion());
+
+        float[] points = geometry.getPoints();
+        assertArrayEquals(new float[]{80, 30, 80, 70, 90, 10, 90, 90}, Arrays.copyOf(points, 8), 0f);
+
+        //尺寸不变时只标记脏，版本在重新计算后才变化
+        version = geometry.getVersion();
+        geometry.setBounds(100, 50, 10, 40, 1);
+        assertFalse(geometry.isDirty());
+        geometry.invalidate();
+        assertEquals(version, geometry.getVersion());
+        geometry.clear();
+        assertTrue(version != geometry.getVersion());
+        assertEquals(0, geometry.getTotalLineCount());
+    }
+
+    @Test
+    public void mirrored_fallsBackToStackedAboveTwoChannels() throws Exception {
+        WaveGeometry geometry = new WaveGeometry();
+        geometry.setBounds(100, 60, 10, 30, 1);
+        geometry.build(new float[][]{{1f}, {1f}});
+        //两个声道时上下镜像
+        assertArrayEquals(new float[]{90, 30, 90, 60, 90, 60, 90, 90}, Arrays.copyOf(geometry.getPoints(), 8), 0f);
+
+        geometry.build(new float[][]{{1f}, {1f}, {1f}});
+        //三个声道各占一条轨道，互不重叠
+        assertArrayEquals(new float[]{90, 10, 90, 30, 90, 50, 90, 70, 90, 90, 90, 110},
+                Arrays.copyOf(geometry.getPoints(), 12), 0f);
+    }
+}
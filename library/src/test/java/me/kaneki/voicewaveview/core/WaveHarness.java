@@ -0,0 +1,245 @@
+package me.kaneki.voicewaveview.core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author kaneki
+ * @Desctription 无界面的录制和播放驱动，与VoiceWaveView相同通过WaveFrameDriver逐帧推进
+ * 由FakeFrameClock推进，振幅轨迹按时间戳在对应帧之前写入，不使用真实时间
+ * 设置系统属性voicewaveview.golden.dir时把快照写入该目录，用于更新基准文件
+ */
+final class WaveHarness {
+    static final long FRAME_INTERVAL_NANOS = 16666667L;
+    private static final String GOLDEN_DIR_PROPERTY = "voicewaveview.golden.dir";
+
+    final FakeFrameClock clock;
+    final FrameTimer frameTimer;
+    final WaveRecorder recorder;
+    final WaveGeometry geometry;
+    final WaveFrameDriver driver;
+    private final int lines;
+
+    //当前播放的压缩波形
+    private float[] playWave;
+    private long playDuration;
+    private boolean playing;
+
+    /**
+     * @param width 绘制区域宽度
+     * @param height 绘制区域高度
+     * @param dividerWidth 波形间隔
+     * @param refreshRatio 采样间隔 ms
+     * @param maxDuration 最大录音时间 秒
+     */
+    WaveHarness(int width, int height, float dividerWidth, long refreshRatio, int maxDuration) {
+        clock = new FakeFrameClock(FRAME_INTERVAL_NANOS);
+        frameTimer = new FrameTimer();
+        recorder = new WaveRecorder(refreshRatio, maxDuration, WaveReducer.MEAN);
+        geometry = new WaveGeometry();
+        driver = new WaveFrameDriver(frameTimer, recorder, geometry);
+        //与WaveRenderer中的计算方式一致
+        lines = Math.max((int) ((width - 10) / dividerWidth), 0);
+        recorder.setVisibleSize(lines);
+        geometry.setBounds(width, height / 2, dividerWidth, height / 2 * 0.6f, 1.0f);
+    }
+
+    int getLines() {
+        return lines;
+    }
+
+    void startRecord() {
+        recorder.start(lines);
+        geometry.invalidate();
+        frameTimer.reset();
+        clock.postFrameCallback(recordCallback);
+    }
+
+    /**
+     * 按帧回放振幅轨迹，每帧之前写入时间戳已到的振幅
+     * @param trace 振幅轨迹
+     * @param listener 每帧绘制后回调，可为null
+     * @return 执行的帧数
+     */
+    int replay(Trace trace, FrameListener listener) {
+        int next = 0;
+        int frame = 0;
+        while (clock.hasPendingCallbacks()) {
+            long now = frameTimer.getElapsedMillis() + FRAME_INTERVAL_NANOS / 1000000;
+            while (next < trace.size() && trace.times[next] <= now) {
+                recorder.offer(trace.amplitudes[next++]);
+            }
+            if (next >= trace.size() && frameTimer.getElapsedMillis() >= trace.getDuration()) {
+                clock.removeFrameCallback(recordCallback);
+                break;
+            }
+            clock.tick();
+            frame++;
+            driver.buildRecordGeometry();
+            if (listener != null)
+                listener.onFrame(frame, this);
+        }
+        return frame;
+    }
+
+    /**
+     * 播放压缩波形直到结束
+     * @param listener 每帧回调，可为null
+     * @return 执行的帧数
+     */
+    int play(float[] wave, long duration, FrameListener listener) {
+        playWave = wave;
+        playDuration = duration;
+        playing = true;
+        frameTimer.reset();
+        geometry.build(wave, wave.length);
+        clock.postFrameCallback(playCallback);
+        int frame = 0;
+        while (clock.tick()) {
+            frame++;
+            if (listener != null)
+                listener.onFrame(frame, this);
+        }
+        return frame;
+    }
+
+    int getPosition() {
+        return driver.getPlayPosition();
+    }
+
+    boolean isPlaying() {
+        return playing;
+    }
+
+    private final FrameClock.FrameCallback recordCallback = new FrameClock.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            driver.recordFrame(frameTimeNanos);
+            if (!recorder.isFinished())
+                clock.postFrameCallback(this);
+        }
+    };
+
+    private final FrameClock.FrameCallback playCallback = new FrameClock.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (driver.playFrame(frameTimeNanos, playWave.length, playDuration))
+                clock.postFrameCallback(this);
+            else
+                playing = false;
+        }
+    };
+
+    interface FrameListener {
+        void onFrame(int frame, WaveHarness harness);
+    }
+
+    /**
+     * @return 当前端点的文本快照，每条波形输出上下端点，保留一位小数
+     */
+    String snapshot() {
+        StringBuilder builder = new StringBuilder();
+        float[] points = geometry.getPoints();
+        int count = geometry.getTotalLineCount();
+        builder.append(count).append(':');
+        for (int i = 0; i < count; i++) {
+            int p = i << 2;
+            builder.append(' ').append(String.format(Locale.US, "%.1f/%.1f", points[p + 1], points[p + 3]));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 与基准文件逐行比较，设置了voicewaveview.golden.dir时改为写入基准文件
+     * @param name 基准文件名，位于test/resources/golden
+     */
+    static void assertGolden(String name, List<String> actual) throws IOException {
+        String dir = System.getProperty(GOLDEN_DIR_PROPERTY);
+        if (dir != null) {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(new File(dir, name)), "UTF-8");
+            try {
+                for (String line : actual) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+            return;
+        }
+        List<String> expected = readLines("/golden/" + name);
+        for (int i = 0; i < Math.min(expected.size(), actual.size()); i++) {
+            assertEquals(name + " line " + (i + 1), expected.get(i), actual.get(i));
+        }
+        assertEquals(name + " line count", expected.size(), actual.size());
+    }
+
+    static List<String> readLines(String resource) throws IOException {
+        InputStream in = WaveHarness.class.getResourceAsStream(resource);
+        assertNotNull("missing resource " + resource, in);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            List<String> lines = new ArrayList<String>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+            return lines;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * 录制的振幅轨迹，每行为"时间(ms) 振幅"，#开头为注释
+     */
+    static final class Trace {
+        final long[] times;
+        final float[] amplitudes;
+
+        private Trace(long[] times, float[] amplitudes) {
+            this.times = times;
+            this.amplitudes = amplitudes;
+        }
+
+        static Trace load(String name) throws IOException {
+            List<String> lines = readLines("/traces/" + name);
+            long[] times = new long[lines.size()];
+            float[] amplitudes = new float[lines.size()];
+            int count = 0;
+            for (String line : lines) {
+                line = line.trim();
+                if (line.length() == 0 || line.startsWith("#"))
+                    continue;
+                int space = line.indexOf(' ');
+                times[count] = Long.parseLong(line.substring(0, space));
+                amplitudes[count] = Float.parseFloat(line.substring(space + 1).trim());
+                count++;
+            }
+            long[] t = new long[count];
+            float[] a = new float[count];
+            System.arraycopy(times, 0, t, 0, count);
+            System.arraycopy(amplitudes, 0, a, 0, count);
+            return new Trace(t, a);
+        }
+
+        int size() {
+            return times.length;
+        }
+
+        long getDuration() {
+            return times.length == 0 ? 0 : times[times.length - 1];
+        }
+    }
+}
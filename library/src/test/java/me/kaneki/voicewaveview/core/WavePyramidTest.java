@@ -0,0 +1,65 @@
+package me.kaneki.voicewaveview.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WavePyramidTest {
+    @Test
+    public void resample_keepsPeaks() throws Exception {
+        float[] samples = new float[1000];
+        samples[10] = 0.9f;
+        samples[995] = 0.7f;
+        WavePyramid pyramid = new WavePyramid(samples);
+        float[] max = new float[10];
+        float[] min = new float[10];
+        pyramid.resample(10, max, min);
+        assertEquals(0.9f, max[0], 0f);
+        assertEquals(0.7f, max[9], 0f);
+        assertEquals(0f, max[5], 0f);
+        assertEquals(0f, min[0], 0f);
+    }
+
+    @Test
+    public void selectLevel_matchesSamplesPerBar() throws Exception {
+        WavePyramid pyramid = new WavePyramid(new float[1024]);
+        assertEquals(0, pyramid.selectLevel(1024));
+        assertEquals(1, pyramid.selectLevel(512));
+        assertEquals(3, pyramid.selectLevel(100));
+        assertEquals(pyramid.getLevelCount() - 1, pyramid.selectLevel(1));
+    }
+
+    @Test
+    public void resample_upsamplesShortData() throws Exception {
+        WavePyramid pyramid = new WavePyramid(new float[]{0.1f, 0.2f});
+        float[] max = new float[4];
+        pyramid.resample(4, max, null);
+        assertArrayEquals(new float[]{0.1f, 0.1f, 0.2f, 0.2f}, max, 0f);
+    }
+
+    @Test
+    public void resampleRange_isExact() throws Exception {
+        java.util.Random random = new java.util.Random(7);
+        float[] samples = new float[997];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = random.nextFloat();
+        }
+        WavePyramid pyramid = new WavePyramid(samples);
+        float[] max = new float[40];
+        float[] min = new float[40];
+        double samplesPerBar = 13.7;
+        pyramid.resample(431.5, samplesPerBar, 40, max, min);
+        for (int i = 0; i < 40; i++) {
+            int from = (int) (431.5 + i * samplesPerBar);
+            int to = Math.min((int) (431.5 + (i + 1) * samplesPerBar), samples.length);
+            float expectedMax = samples[from];
+            float expectedMin = samples[from];
+            for (int j = from + 1; j < to; j++) {
+                expectedMax = Math.max(expectedMax, samples[j]);
+                expectedMin = Math.min(expectedMin, samples[j]);
+            }
+            assertEquals(expectedMax, max[i], 0f);
+            assertEquals(expectedMin, min[i], 0f);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package me.kaneki.voicewaveview.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WaveRecorderTest {
+    @Test
+    public void advance_keepsPeakBetweenSamples() throws Exception {
+        WaveRecorder recorder = new WaveRecorder(50, 0, WaveReducer.MEAN);
+        recorder.setVisibleSize(4);
+        recorder.start(4);
+        recorder.offer(new float[]{0.2f, 0.9f, 0.4f}, 0, 3);
+        assertEquals(1, recorder.advance(50));
+        //没有新输入时保持上次的值
+        assertEquals(2, recorder.advance(150));
+        FloatRingBuffer visible = recorder.getVisibleWave();
+        assertEquals(0.9f, visible.get(1), 0f);
+        assertEquals(0.9f, visible.get(3), 0f);
+        assertEquals(3, recorder.getSampleStore().size());
+        assertEquals(150, recorder.getDuration());
+        assertEquals(3, recorder.getSamplesIngested());
+    }
+
+    @Test
+    public void advance_stopsAtMaxDuration() throws Exception {
+        WaveRecorder recorder = new WaveRecorder(100, 1, WaveReducer.PEAK);
+        recorder.setVisibleSize(8);
+        recorder.start(8);
+        recorder.advance(5000);
+        assertTrue(recorder.isFinished());
+        assertEquals(9, recorder.getSampleStore().size());
+        assertEquals(8, recorder.finish().length);
+    }
+
+    @Test
+    public void advance_interleavedChannels() throws Exception {
+        WaveRecorder recorder = new WaveRecorder(50, 0, WaveReducer.PEAK);
+        recorder.setChannelCount(2);
+        recorder.setVisibleSize(2);
+        recorder.start(2);
+        //最后一个不完整的帧被忽略
+        recorder.offer(new float[]{0.1f, 0.8f, 0.6f, 0.2f, 0.9f}, 0, 5);
+        assertEquals(1, recorder.advance(50));
+        FloatRingBuffer[] visible = recorder.getVisibleWaves();
+        assertEquals(0.6f, visible[0].get(1), 0f);
+        assertEquals(0.8f, visible[1].get(1), 0f);
+        //原始波形保存各声道的峰值
+        float[] mix = new float[1];
+        recorder.getSampleStore().read(0, mix, 0, 1);
+        assertEquals(0.8f, mix[0], 0f);
+        assertEquals(2, recorder.getSamplesIngested());
+        assertEquals(2, recorder.finishChannels().length);
+    }
+
+    @Test
+    public void droppedCount_resetsOnStart() throws Exception {
+        WaveRecorder recorder = new WaveRecorder(50, 0, WaveReducer.MEAN);
+        recorder.setVisibleSize(4);
+        recorder.start(4);
+        float[] values = new float[5000];
+        recorder.offer(values, 0, values.length);
+        assertTrue(recorder.getDroppedCount() > 0);
+        //丢弃个数与输入个数统计同一次录制
+        recorder.start(4);
+        assertEquals(0, recorder.getDroppedCount());
+        assertEquals(0, recorder.getSamplesIngested());
+    }
+
+    @Test
+    public void offerShared_fromSeveralThreads() throws Exception {
+        final WaveRecorder recorder = new WaveRecorder(50, 0, WaveReducer.MEAN);
+        recorder.setVisibleSize(4);
+        recorder.start(4);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        recorder.offerShared(0.5f);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        recorder.advance(50);
+        //队列容量足够时多个写入线程不会丢失或覆盖振幅
+        assertEquals(4000, recorder.getSamplesIngested());
+        assertEquals(0, recorder.getDroppedCount());
+        assertEquals(0.5f, recorder.getVisibleWave().get(recorder.getVisibleWave().size() - 1), 0f);
+    }
+}
@@ -0,0 +1,111 @@
+package me.kaneki.voicewaveview.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WaveReplayTest {
+    //每隔多少帧记录一次端点快照
+    private static final int SNAPSHOT_INTERVAL = 15;
+
+    @Test
+    public void record_speechTrace_matchesGolden() throws Exception {
+        WaveHarness harness = new WaveHarness(600, 100, 10, 50, 60);
+        final List<String> snapshots = new ArrayList<String>();
+        harness.startRecord();
+        int frames = harness.replay(WaveHarness.Trace.load("speech.txt"), new WaveHarness.FrameListener() {
+            @Override
+            public void onFrame(int frame, WaveHarness harness) {
+                if (frame % SNAPSHOT_INTERVAL == 0)
+                    snapshots.add("frame " + frame + " " + harness.snapshot());
+            }
+        });
+        //6秒的轨迹约360帧，按帧时间推进而不是真实时间
+        assertEquals(harness.frameTimer.getElapsedMillis() / 50, harness.recorder.getSampleStore().size());
+        assertTrue(frames >= 358);
+
+        float[] compressed = harness.recorder.finish();
+        assertEquals(harness.getLines(), compressed.length);
+        harness.geometry.build(compressed, compressed.length);
+        snapshots.add("compressed " + harness.snapshot());
+        WaveHarness.assertGolden("speech_record.txt", snapshots);
+    }
+
+    @Test
+    public void record_jitteredTraceWithStalls_catchesUp() throws Exception {
+        WaveHarness harness = new WaveHarness(300, 80, 6, 40, 60);
+        final List<String> snapshots = new ArrayList<String>();
+        harness.startRecord();
+        harness.replay(WaveHarness.Trace.load("jitter.txt"), new WaveHarness.FrameListener() {
+            @Override
+            public void onFrame(int frame, WaveHarness harness) {
+                //每40帧模拟一次主线程卡顿，下一帧一次补齐缺少的样本
+                if (frame % 40 == 0)
+                    harness.clock.stall(5);
+                if (frame % SNAPSHOT_INTERVAL == 0)
+                    snapshots.add("frame " + frame + " " + harness.snapshot());
+            }
+        });
+        long elapsed = harness.frameTimer.getElapsedMillis();
+        assertEquals(elapsed / 40, harness.recorder.getSampleStore().size());
+        assertEquals(0, harness.recorder.getDroppedCount());
+        WaveHarness.assertGolden("jitter_record.txt", snapshots);
+    }
+
+    @Test
+    public void play_positionTracksElapsedTime() throws Exception {
+        WaveHarness harness = new WaveHarness(600, 100, 10, 50, 60);
+        harness.startRecord();
+        harness.replay(WaveHarness.Trace.load("speech.txt"), null);
+        final float[] compressed = harness.recorder.finish();
+        final long duration = harness.recorder.getDuration();
+        final int[] last = {0};
+        harness.play(compressed, duration, new WaveHarness.FrameListener() {
+            @Override
+            public void onFrame(int frame, WaveHarness harness) {
+                int position = harness.getPosition();
+                assertTrue("position went back at frame " + frame, position >= last[0]);
+                last[0] = position;
+                //位置对应的时间与实际播放时间相差不超过一个波形
+                long elapsed = Math.min(harness.frameTimer.getElapsedMillis(), duration);
+                long positionMillis = WavePlayback.millisAt(position, compressed.length, duration);
+                assertTrue("position " + position + " at " + elapsed + "ms",
+                        Math.abs(positionMillis - elapsed) <= duration / compressed.length + 1);
+            }
+        });
+        assertFalse(harness.isPlaying());
+        assertEquals(compressed.length, harness.getPosition());
+    }
+
+    @Test
+    public void playExternal_stopsWhenPositionStalls() throws Exception {
+        WaveFrameDriver driver = new WaveFrameDriver(new FrameTimer(), new WaveRecorder(50, 0, WaveReducer.MEAN), new WaveGeometry());
+        driver.resetExternalPosition();
+        long frame = WaveHarness.FRAME_INTERVAL_NANOS;
+        //播放器停在比波形时长短几毫秒的位置
+        assertTrue(driver.playFrameAt(0, 990, 10, 1000));
+        assertTrue(driver.playFrameAt(frame, 995, 10, 1000));
+        assertTrue(driver.playFrameAt(frame * 30, 995, 10, 1000));
+        long stallNanos = driver.getStallMillis() * 1000000L;
+        assertFalse(driver.playFrameAt(frame + stallNanos, 995, 10, 1000));
+        assertEquals(9, driver.getPlayPosition());
+        //恢复后重新计时
+        driver.resetExternalPosition();
+        assertTrue(driver.playFrameAt(frame * 2 + stallNanos, 995, 10, 1000));
+        //到达总时长立即结束
+        assertFalse(driver.playFrameAt(frame * 3 + stallNanos, 1000, 10, 1000));
+    }
+
+    @Test
+    public void playback_positionMath() throws Exception {
+        assertEquals(0, WavePlayback.positionAt(-5, 10, 1000));
+        assertEquals(4, WavePlayback.positionAt(450, 10, 1000));
+        assertEquals(10, WavePlayback.positionAt(1000, 10, 1000));
+        assertEquals(10, WavePlayback.positionAt(0, 10, 0));
+        assertEquals(400, WavePlayback.millisAt(4, 10, 1000));
+        assertEquals(0, WavePlayback.millisAt(4, 0, 1000));
+    }
+}
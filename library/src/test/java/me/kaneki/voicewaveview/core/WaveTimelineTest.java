@@ -0,0 +1,59 @@
+package me.kaneki.voicewaveview.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class WaveTimelineTest {
+    private static WaveTimeline create(int samples) {
+        float[] values = new float[samples];
+        for (int i = 0; i < samples; i++) {
+            values[i] = i;
+        }
+        WaveTimeline timeline = new WaveTimeline();
+        timeline.setViewport(10, 2f);
+        timeline.setSource(new WavePyramid(values));
+        return timeline;
+    }
+
+    @Test
+    public void source_fitsViewport() {
+        WaveTimeline timeline = create(100);
+        assertEquals(10, timeline.getSamplesPerBar(), 1e-9);
+        assertEquals(0, timeline.getMaxScroll(), 0f);
+        float[] out = new float[11];
+        assertEquals(10, timeline.fillVisible(out));
+        assertEquals(9, out[0], 0f);
+        assertEquals(99, out[9], 0f);
+    }
+
+    @Test
+    public void zoomAndScroll_onlyViewport() {
+        WaveTimeline timeline = create(100);
+        timeline.setSamplesPerBar(1, 0);
+        assertEquals(100, timeline.getTotalBars());
+        assertEquals(180, timeline.getMaxScroll(), 0f);
+
+        float[] out = new float[11];
+        timeline.setScroll(41);
+        assertEquals(1, timeline.getScrollOffset(), 1e-4f);
+        assertEquals(11, timeline.fillVisible(out));
+        assertEquals(20, out[0], 0f);
+        assertEquals(30, out[10], 0f);
+
+        timeline.scrollBy(1000);
+        assertEquals(180, timeline.getScroll(), 0f);
+        assertEquals(10, timeline.fillVisible(out));
+        assertEquals(99, out[9], 0f);
+    }
+
+    @Test
+    public void zoom_keepsFocus() {
+        WaveTimeline timeline = create(1000);
+        timeline.setSamplesPerBar(4, 0);
+        timeline.setScroll(100);
+        //焦点处样本位置 (100 + 10) / 2 * 4 = 220
+        timeline.setSamplesPerBar(2, 10);
+        assertEquals(220, (timeline.getScroll() + 10) / 2 * timeline.getSamplesPerBar(), 1e-3);
+    }
+}
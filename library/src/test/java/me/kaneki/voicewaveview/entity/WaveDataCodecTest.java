@@ -0,0 +1,82 @@
+package me.kaneki.voicewaveview.entity;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class WaveDataCodecTest {
+    @Test
+    public void roundTrip_8bit() throws Exception {
+        float[] amplitudes = new float[64];
+        for (int i = 0; i < amplitudes.length; i++) {
+            amplitudes[i] = i / 63f;
+        }
+        byte[] bytes = new WaveData(amplitudes, 12345).toBytes();
+        assertEquals(16 + 64, bytes.length);
+
+        WaveData decoded = WaveData.fromBytes(bytes);
+        assertEquals(12345, decoded.getDuration());
+        assertArrayEquals(amplitudes, decoded.getAmplitudes(), 1f / 255);
+    }
+
+    @Test
+    public void roundTrip_16bitFromByteBuffer() throws Exception {
+        float[] amplitudes = {0f, 0.333f, 0.5f, 1f, 2f};
+        byte[] bytes = new WaveData(amplitudes, 1000).toBytes(WaveDataCodec.BITS_16);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + 4);
+        buffer.putInt(42).put(bytes).flip();
+        buffer.getInt();
+
+        WaveData decoded = WaveData.fromByteBuffer(buffer);
+        assertEquals(0, buffer.remaining());
+        assertArrayEquals(new float[]{0f, 0.333f, 0.5f, 1f, 1f}, decoded.getAmplitudes(), 1f / 65535);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_rejectsTruncatedData() throws Exception {
+        byte[] bytes = new WaveData(new float[10], 0).toBytes();
+        WaveData.fromBytes(java.util.Arrays.copyOf(bytes, bytes.length - 1));
+    }
+
+    @Test
+    public void roundTrip_multiChannel() throws Exception {
+        float[][] channels = {{0f, 0.5f, 1f}, {1f, 0.25f, 0f}};
+        byte[] bytes = new WaveData(channels, 500).toBytes(WaveDataCodec.BITS_16);
+        assertEquals(20 + 2 * 3 * 2, bytes.length);
+
+        WaveData decoded = WaveData.fromBytes(bytes);
+        assertEquals(2, decoded.getChannelCount());
+        assertEquals(500, decoded.getDuration());
+        assertArrayEquals(channels[1], decoded.getChannelAmplitudes(1), 1f / 65535);
+        //合成波形逐点取峰值
+        assertArrayEquals(new float[]{1f, 0.5f, 1f}, decoded.getAmplitudes(), 1f / 65535);
+    }
+
+    @Test
+    public void decode_singleChannelStaysVersion1() throws Exception {
+        byte[] bytes = new WaveData(new float[][]{{0.5f, 0.5f}}, 0).toBytes();
+        assertEquals(1, bytes[2]);
+        assertEquals(1, WaveData.fromBytes(bytes).getChannelCount());
+    }
+
+    @Test
+    public void getAmplitudes_reusesOutBuffer() throws Exception {
+        float[] amplitudes = new float[64];
+        for (int i = 0; i < amplitudes.length; i++) {
+            amplitudes[i] = i / 63f;
+        }
+        WaveData waveData = new WaveData(amplitudes, 1000);
+        float[] out = new float[16];
+        assertSame(out, waveData.getAmplitudes(16, out));
+        assertArrayEquals(waveData.getAmplitudes(16), out, 0f);
+        //长度不符时重新分配，个数一致时返回原数组
+        assertEquals(8, waveData.getAmplitudes(8, out).length);
+        assertSame(amplitudes, waveData.getAmplitudes(64, out));
+
+        WaveData stereo = new WaveData(new float[][]{amplitudes, amplitudes.clone()}, 1000);
+        float[] channelOut = new float[4];
+        assertSame(channelOut, stereo.getChannelAmplitudes(1, 4, channelOut));
+    }
+}
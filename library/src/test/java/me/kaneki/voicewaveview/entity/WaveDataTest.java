@@ -0,0 +1,57 @@
+package me.kaneki.voicewaveview.entity;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+public class WaveDataTest {
+    @Test
+    public void legacyWaveList_isNormalizedByWaveHeight() {
+        ArrayList<WaveBean> list = new ArrayList<>();
+        list.add(new WaveBean(30));
+        list.add(new WaveBean(60));
+        list.add(new WaveBean(90));
+        WaveData waveData = new WaveData(list, 1000);
+        assertTrue(waveData.isPixelBased());
+        waveData.setWaveHeight(60);
+        //超出波形最大高度的像素偏移截断为1
+        assertArrayEquals(new float[]{0.5f, 1f, 1f}, waveData.getAmplitudes(), 1e-6f);
+        //高度变化后重新换算，原列表保持不变
+        waveData.setWaveHeight(120);
+        assertArrayEquals(new float[]{0.25f, 0.5f, 0.75f}, waveData.getAmplitudes(), 1e-6f);
+        assertSame(list, waveData.getWaveList());
+    }
+
+    @Test
+    public void legacyWaveList_withoutWaveHeight_isNormalizedByMaxOffset() {
+        ArrayList<WaveBean> list = new ArrayList<>();
+        list.add(new WaveBean(12));
+        list.add(new WaveBean(48));
+        list.add(new WaveBean(24));
+        WaveData waveData = new WaveData(list, 1000);
+        assertArrayEquals(new float[]{0.25f, 1f, 0.5f}, waveData.getAmplitudes(), 1e-6f);
+        //编码结果不会被截断为满高度
+        WaveData decoded = WaveData.fromBytes(waveData.toBytes(WaveDataCodec.BITS_16));
+        assertArrayEquals(new float[]{0.25f, 1f, 0.5f}, decoded.getAmplitudes(), 1e-4f);
+        //按指定高度换算不修改原对象
+        float[] scaled = waveData.getAmplitudesForHeight(96, null);
+        assertArrayEquals(new float[]{0.125f, 0.5f, 0.25f}, scaled, 1e-6f);
+        assertEquals(0, waveData.getWaveHeight(), 0f);
+        assertArrayEquals(new float[]{0.25f, 1f, 0.5f}, waveData.getAmplitudes(), 1e-6f);
+    }
+
+    @Test
+    public void amplitudes_roundTripThroughWaveList() {
+        WaveData recorded = new WaveData(new float[]{0.25f, 1f}, 500);
+        recorded.setWaveHeight(48);
+        ArrayList<WaveBean> saved = recorded.getWaveList();
+        assertEquals(12, saved.get(0).getY_offset(), 1e-6f);
+        assertEquals(48, saved.get(1).getY_offset(), 1e-6f);
+
+        WaveData restored = new WaveData(saved, 500);
+        restored.setWaveHeight(48);
+        assertArrayEquals(recorded.getAmplitudes(), restored.getAmplitudes(), 1e-6f);
+    }
+}
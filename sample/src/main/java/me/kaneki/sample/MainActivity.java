@@ -21,6 +21,8 @@ public class MainActivity extends AppCompatActivity {
     Button btn_main5;
 
     Random random = new Random();
+    //模拟录音输入的线程 同一时间只有一个
+    Thread feederThread;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -40,19 +42,22 @@ public class MainActivity extends AppCompatActivity {
             public void onClick(View v) {
                 wvw_main.startRecord();
 
-                new Thread(new Runnable() {
+                if (feederThread != null)
+                    return;
+                feederThread = new Thread(new Runnable() {
                     @Override
                     public void run() {
-                        while (true) {
+                        while (!Thread.currentThread().isInterrupted()) {
                             try {
                                 wvw_main.setWaveHeightPercent(random.nextInt(100) + 1);
                                 Thread.sleep(100);
                             } catch (InterruptedException e) {
-                                e.printStackTrace();
+                                return;
                             }
                         }
                     }
-                }).start();
+                });
+                feederThread.start();
             }
         });
 
@@ -60,6 +65,7 @@ public class MainActivity extends AppCompatActivity {
             @Override
             public void onClick(View v) {
                 wvw_main.stopRecord();
+                stopFeeder();
             }
         });
 
@@ -87,4 +93,17 @@ public class MainActivity extends AppCompatActivity {
             }
         });
     }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        stopFeeder();
+    }
+
+    private void stopFeeder() {
+        if (feederThread != null) {
+            feederThread.interrupt();
+            feederThread = null;
+        }
+    }
 }